@@ -66,5 +66,10 @@ public class Problem003 {
 		// It works for N, but for some Ns (like 200000146) it will run very very slowly.
 		// What's its problem? Try to answer without actually running the program.
 		// (I recommend looking into NumberTheory.longPrimesStream())
+
+		// 3. The algorithm above still traverses all the primes below sqrt(N) when N is
+		// the product of two big primes, like 1000000016000000063. How does
+		// LongFactorized factorize such numbers in a few milliseconds? (Hint: Pollard's
+		// rho algorithm and Primes.isPrime())
 	}
 }
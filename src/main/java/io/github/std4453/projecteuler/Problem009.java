@@ -51,9 +51,9 @@ public class Problem009 {
 		IntFactorized sumFactorized = of(SUM);
 		IntFactorized nFactorized = divide(
 				newMult(sumFactorized, sumFactorized), of(2));
-		NumberTheory.intDivisorStream(nFactorized)
-				.filter(i -> i >= sqrt)  // a < b
-				.filter(i -> i < SUM)  // a > 0
+		NumberTheory.intDivisorsBetween(nFactorized,
+				sqrt,  // a < b
+				SUM)  // a > 0
 				.filter(i -> n / i < SUM)  // b > 0
 				.map(i -> {  // calculate result
 					int a = -i + SUM;
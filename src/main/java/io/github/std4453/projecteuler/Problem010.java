@@ -13,11 +13,14 @@ public class Problem010 {
 	// This is yet another "primes" problem, testing the best speed you can arrive with
 	// prime generation algorithms. For that, I chose the Sieve of Eratosthenes. Maybe
 	// I or maybe you can choose another algorithm and reach even higher speed.
+	// The primes are streamed out of a segmented sieve instead of being collected into
+	// a list first, so only O(sqrt(n)) memory is needed and MAX can be raised a lot.
+	// And since the stream splits by segments, it can simply go parallel.
 
 	public static void main(String[] args) {
-		System.out.println(Primes.sievePrimesInt(MAX).intStream().asLongStream().sum());
+		System.out.println(Primes.range(0, MAX).parallel().sum());
 
 		// Answer: 142913828922
-		// Complexity: O(n * log(n) * log(log(n)))  (that of Primes.sievePrimesInt())
+		// Complexity: O(n * log(log(n)))  (that of the segmented sieve)
 	}
 }
@@ -1,10 +1,6 @@
 package io.github.std4453.projecteuler;
 
-import io.github.std4453.projecteuler.utils.LongFactorized;
-
-import java.util.Objects;
-import java.util.function.Supplier;
-import java.util.stream.LongStream;
+import io.github.std4453.projecteuler.utils.NumberTheory;
 
 /**
  * Problem #15: Lattice paths<br />
@@ -45,28 +41,16 @@ public class Problem015 {
 	// https://en.wikipedia.org/wiki/Combination.
 	// Here we just need the closed-form formula of C(n, k):
 	// C(n, k) = n! / (k! * (n - k)!) = n * (n - 1) * ... * (n - k + 1) / k!
-	// which evaluation is implemented below.
-
-	private static long c(int n, int k) {
-		// Here we first factorize the numbers before multiplying them together because
-		// a) 20! exceeds max value of long b) factorized multiplication & division is
-		// faster than that of BigInteger
-
-		Supplier<RuntimeException> orElse = RuntimeException::new;  // unexpected
-		return Objects.requireNonNull(LongFactorized.divide(  // divide
-				LongStream.rangeClosed(n - k + 1, n)  // from n - k + 1 to n
-						.mapToObj(LongFactorized::of)  // factorize
-						.reduce(LongFactorized::newMult)  // multiply
-						.orElseThrow(orElse),  // unexpected
-				LongStream.rangeClosed(1, k)  // k!
-						.mapToObj(LongFactorized::of)  // factorize
-						.reduce(LongFactorized::newMult)  // multiply
-						.orElseThrow(orElse)))  // unexpected
-				.getNumber();  // LongFactorized -> long
-	}
+	// which evaluation is implemented in NumberTheory.binomialExact().
+	// Instead of factorizing every term and dividing, it uses Legendre's formula: The
+	// exponent of prime p in n! is floor(n / p) + floor(n / p^2) + floor(n / p^3) + ...
+	// since that many of 1..n are multiples of p, p^2, p^3, ... respectively. So the
+	// exponent of p in C(n, k) is known without dividing anything, and the prime
+	// powers are multiplied together as BigIntegers, which never overflow, even long
+	// after C(n, k) exceeds the max value of long, which C(67, 33) already does.
 
 	public static void main(String[] args) {
-		System.out.println(c(X + Y, X));
+		System.out.println(NumberTheory.binomialExact(X + Y, X));
 
 		// Answer: 137846528820
 		// Complexity: O(X + Y)
@@ -1,11 +1,7 @@
 package io.github.std4453.projecteuler;
 
-import io.github.std4453.projecteuler.utils.IntArrayList;
 import io.github.std4453.projecteuler.utils.Primes;
 
-import java.util.Set;
-import java.util.TreeSet;
-
 import static io.github.std4453.projecteuler.utils.StreamUtils.limitUntil;
 
 /**
@@ -29,7 +25,6 @@ import static io.github.std4453.projecteuler.utils.StreamUtils.limitUntil;
  */
 public class Problem027 {
 	private static final int MAX = 1000;
-	private static final int MAX_PRIMES = 79;
 
 	// Since for n = 0, n^2 + a * n + b = b is prime, b must be prime and b > 0.
 	// If b = 2, 2^2 + a * 2 + b is prime therefore a = -2, however then 1^2 + a * 1 +
@@ -40,51 +35,14 @@ public class Problem027 {
 	// Bearing this in mind, we enumerate all the possible pairs of (a, b) to find the
 	// required answer.
 
-	// We use the following way to speed up checking whether a number is prime:
-	// Generate and store in a TreeSet all primes under an estimated maximum that
-	// n^2 + a * n + b can get. (Since n^2 - 79n + 1601 can generate 80 primes, we take
-	// that for |a| < 1000 & |b| <= 1000 there can be at most 79 primes, therefore the
-	// maximum will be about 79^2 = 6241.)
-	// And set maxPrime to be maximum prime generated initially.
-	// On our way enumerating all the possible pairs of (a, b), we will get many values
-	// of n^2 + a * n + b, for every one of them, say k, we follow the following steps:
-	// 1. If k < 2, k is certainly non-prime.
-	// 2. If k <= maxPrime, whether k is prime is equal to whether k is in primes.
-	// 3. If k > maxPrime, generate all primes equal to or under k, store them in primes,
-	// and update maxPrime. Whether k is prime is equal to whether k is in primes.
-
-	private static Set<Integer> primes = new TreeSet<>();
-	private static int maxPrime;
-
-	// max here is inclusive
-	private static void generatePrimes(int max) {
-		// max in sievePrimesInt() is exclusive
-		IntArrayList generated = Primes.sievePrimesInt(max + 1);
-		primes.clear();
-		primes.addAll(generated);
-		maxPrime = generated.getInt(generated.size() - 1);
-	}
-
-	private static boolean isPrime(int k) {
-		if (k < 2) return false;
-		if (k <= maxPrime) return primes.contains(k);
-
-		// k > maxPrime
-		// We now generate all primes equal to or under k, and if k is non-prime,
-		// maxPrime would be less than k, therefore we don't check k <= maxPrime
-		// after generatePrimes()
-		generatePrimes(k);
-		return primes.contains(k);
-	}
-
-	private static void initialGeneratePrimes() {
-		generatePrimes(MAX_PRIMES * MAX_PRIMES);
-	}
+	// Checking whether n^2 + a * n + b is prime is done by Primes.isPrime(), which
+	// runs a deterministic Miller-Rabin test, therefore there's no need to generate
+	// and store all the primes below the maximum that n^2 + a * n + b can get.
 
 	// get the number of primes that n^2 + a * n + b can generate with consecutive n
 	private static int numPrimes(int a, int b) {
 		int n;
-		for (n = 1; isPrime((n + a) * n + b); ++n) ;  // skip n = 0 since b is prime
+		for (n = 1; Primes.isPrime((n + a) * n + b); ++n) ;  // skip n = 0 since b is prime
 		return n;
 	}
 
@@ -103,7 +61,6 @@ public class Problem027 {
 	}
 
 	public static void main(String[] args) {
-		initialGeneratePrimes();
 		limitUntil(Primes.intPrimesStream(),
 				n -> n > MAX)
 				.skip(1)  // skip 2
@@ -2,8 +2,6 @@ package io.github.std4453.projecteuler;
 
 import io.github.std4453.projecteuler.utils.Primes;
 
-import java.util.Set;
-import java.util.TreeSet;
 import java.util.stream.IntStream;
 
 import static io.github.std4453.projecteuler.utils.MathsHelper.pow;
@@ -20,28 +18,23 @@ public class Problem035 {
 	private static final int MAX = 1000000;
 	private static final double EPS = 1e-6;
 
-	private static Set<Integer> primes = new TreeSet<>();
-
-	// generate all primes under MAX
-	private static void generatePrimes() {
-		primes.addAll(Primes.sievePrimesInt(MAX));
-	}
+	// Every rotation of n is checked with Primes.isPrime(), a deterministic
+	// Miller-Rabin test, instead of looking it up in a set of all primes under MAX.
 
 	private static boolean isCircularPrime(int n) {
 		// num of digits
 		int digits = (int) Math.round(Math.floor(Math.log10(n) + EPS)) + 1;
 		int pow10 = pow(10, digits - 1);  // maximum power of 10 < n
-		if (!primes.contains(n)) return false;  // not circular prime
+		if (!Primes.isPrime(n)) return false;  // not circular prime
 		int nn = n;  // copy of n
 		do {  // circulate n
 			n = (n % pow10) * 10 + (n / pow10);
-			if (!primes.contains(n)) return false;  // not circular prime
+			if (!Primes.isPrime(n)) return false;  // not circular prime
 		} while (n != nn);  // stop when a cycle has formed
 		return true;  // is circular prime
 	}
 
 	public static void main(String[] args) {
-		generatePrimes();  // generate all primes under MAX
 		System.out.println(IntStream.range(1, MAX)
 				.filter(Problem035::isCircularPrime)
 				.count());
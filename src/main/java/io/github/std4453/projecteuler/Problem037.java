@@ -2,9 +2,6 @@ package io.github.std4453.projecteuler;
 
 import io.github.std4453.projecteuler.utils.Primes;
 
-import java.util.Set;
-import java.util.TreeSet;
-
 import static io.github.std4453.projecteuler.utils.MathsHelper.pow;
 
 /**
@@ -21,12 +18,10 @@ public class Problem037 {
 	private static final int NUM = 11;
 	private static final double EPS = 1e-6;
 
-	private static Set<Integer> primes = new TreeSet<>();
-
 	private static boolean isTruncatableLeftToRight(int n) {
 		do {
 			n /= 10;
-			if (!primes.contains(n)) return false;
+			if (!Primes.isPrime(n)) return false;
 		} while (n >= 10);
 		return true;
 	}
@@ -37,14 +32,13 @@ public class Problem037 {
 		do {
 			n = n % pow10;
 			pow10 /= 10;
-			if (!primes.contains(n)) return false;
+			if (!Primes.isPrime(n)) return false;
 		} while (n >= 10);
 		return true;
 	}
 
 	public static void main(String[] args) {
 		System.out.println(Primes.intPrimesStream()  // all primes
-				.peek(primes::add)  // add to primes
 				.skip(4)  // skip 2, 3, 5, 7
 				.filter(Problem037::isTruncatableLeftToRight)  // ltr
 				.filter(Problem037::isTruncatableRightToLeft)  // rtl
@@ -30,9 +30,9 @@ public class Problem039 {
 	private static int numSolutions(int p, IntFactorized pFactorized) {
 		IntFactorized k = IntFactorized.divide(  // p^2 / 2
 				IntFactorized.newMult(pFactorized, pFactorized), IntFactorized.of(2));
-		return (int) NumberTheory.intDivisorStream(k)  // divisors
-				.filter(i -> i > p >> 1)  // lower bound
-				.filter(i -> i < (p * 3) << 2)  // upper bound
+		return (int) NumberTheory.intDivisorsBetween(k,  // divisors
+				(p >> 1) + 1,  // lower bound
+				(p * 3) << 2)  // upper bound
 				.count();  // number of remaining divisors = number of solutions
 	}
 
@@ -2,6 +2,8 @@ package io.github.std4453.projecteuler;
 
 import io.github.std4453.projecteuler.utils.Primes;
 
+import java.math.BigInteger;
+
 import static io.github.std4453.projecteuler.utils.MathsHelper.pow;
 
 /**
@@ -56,16 +58,22 @@ public class Problem313 {
 	// there are:
 	// sigma((pi^2 - 1) / 24, 1, n) * 2 + 2
 	// integer pairs (m, n) so that sqrt(S(m, n)) is prime.
+	// Since (pi^2 - 1) / 24 are all integers, the sum can be taken before dividing:
+	// sigma(pi^2 - 1, 1, n) / 12 + 2
+	// = (sigma(p^2, p < MAX) - 2^2 - 3^2 - (pi(MAX - 1) - 2)) / 12 + 2
+	// where both sigma(p^2) and pi(x) can be calculated in sublinear time without
+	// enumerating the primes, see Primes.sumOfPowersExact() and Primes.count().
 
 	public static void main(String[] args) {
-		System.out.println(Primes.sievePrimesLong(MAX)  // all primes below max
-				.longStream()  // use long because the final answer exceeds 2^31 - 1
-				.skip(2)  // skip 2 & 3
-				.map(n -> (n * n - 1) / 24)  // number of pairs (m, n) where m > n
-				.sum() * 2 + 2);  // times 2 plus 2 and we get the answer
+		BigInteger sumOfSquares = Primes.sumOfPowersExact(MAX - 1, 2);
+		long count = Primes.count(MAX - 1) - 2;  // number of primes except 2 & 3
+		System.out.println(sumOfSquares
+				.subtract(BigInteger.valueOf(2 * 2 + 3 * 3 + count))
+				.divide(BigInteger.valueOf(12))
+				.add(BigInteger.valueOf(2)));  // the answer exceeds 2^31 - 1
 
 		// Answer: 2057774861813004
-		// Answer: O(n * log(n) * log(log(n)))  // that of the sieve algorithm
+		// Answer: O(n^(3/4) / log(n))  // that of the Lucy_Hedgehog algorithm
 
 		// Homework:
 		// Prove Theorem 1.
@@ -1,6 +1,9 @@
 package io.github.std4453.projecteuler;
 
-import io.github.std4453.projecteuler.utils.Primes;
+import io.github.std4453.projecteuler.utils.Dirichlet;
+import io.github.std4453.projecteuler.utils.ModArith;
+import io.github.std4453.projecteuler.utils.NumberTheory;
+import io.github.std4453.projecteuler.utils.QuotientBlocks;
 
 import java.util.Arrays;
 
@@ -20,17 +23,7 @@ public class Problem350 {
 
 	private static final long MOD = pow(101L, 4L);
 
-	private static long modMult(long a, long b) {
-		return a * b % MOD;
-	}
-
-	private static long modAdd(long a, long b) {
-		return (a + b) % MOD;
-	}
-
-	private static long modAbs(long n) {
-		return n < 0 ? n % MOD + MOD : n % MOD;
-	}
+	private static final ModArith ARITH = new ModArith(MOD);
 
 	public static void main(String[] args) {
 		long start = System.currentTimeMillis();
@@ -40,9 +33,17 @@ public class Problem350 {
 		long[] thetaCache = buildThetaCache(maxTimes);
 		System.out.println("Theta cache built.");
 
-		long sum = 0;
+		// M / i is the same over each quotient block, so that only the prefix sums of
+		// theta over the O(sqrt(M)) blocks are needed
+		long[] thetaSums = new long[maxTimes + 1];
 		for (int i = 1; i <= maxTimes; ++i)
-			sum = modAdd(sum, modMult(modAbs(M / i - L + 1), thetaCache[i]));
+			thetaSums[i] = ARITH.add(thetaSums[i - 1], thetaCache[i]);
+		long sum = QuotientBlocks.starts(M, 1, maxTimes).map(l -> {
+			long q = M / l;
+			int r = (int) Math.min(M / q, maxTimes);
+			long thetaSum = ARITH.reduce(thetaSums[r] - thetaSums[(int) l - 1]);
+			return ARITH.multiply(ARITH.reduce(q - L + 1), thetaSum);
+		}).reduce(0, ARITH::add);
 		System.out.println(sum);
 
 		long end = System.currentTimeMillis();
@@ -53,64 +54,22 @@ public class Problem350 {
 	}
 
 	private static long[] buildThetaCache(int max) {
-		int maxK = (int) Math.round(Math.log(max) / Math.log(2));
-		long[] phiCache = buildPhiCache(maxK);
-		System.out.println("Phi cache built.");
-
-		long[] cache = new long[max + 1];
-		Arrays.fill(cache, phiCache[0]);
-		int[] minPrimeFactor = new int[max + 1];
-		int[] primes = Primes.sievePrimesInt(max + 1).toIntArray();
-		for (int p : primes)
-			for (int n = p, j = 1; n <= max; ++j, n += p) minPrimeFactor[n] = p;
-		for (int i = 2; i <= max; ++i) {
-			int j = i;
-			int minP = minPrimeFactor[j];
-			int expo = 0;
-			for (; j % minP == 0; j /= minP) ++expo;
-			cache[i] = modMult(modMult(cache[i], phiCache[expo]), cache[j]);
-		}
-		return cache;
-	}
-
-	private static long[] buildPhiCache(int maxK) {
-		long[] cache = new long[maxK + 1];
-
-		long[] powNCache = buildPowNCache(maxK + 1);
-		System.out.println("PowN cache built.");
-		cache[0] = 1;
-		for (int i = 1; i <= maxK; ++i)
-			cache[i] = modAbs(powNCache[i + 1] - 2 * powNCache[i] + powNCache[i - 1]);
-
-		return cache;
+		// theta(p^k) is the second difference (k + 1)^N - 2 * k^N + (k - 1)^N, which
+		// is the convolution of d(n)^N with the inverse of 1 * 1 = d, that is, mu * mu
+		int[] divisorCounts = NumberTheory.divisorCounts(max);
+		long[] powNCache = buildPowNCache(Arrays.stream(divisorCounts).max().getAsInt());
+		long[] countPowers = new long[max + 1];
+		for (int i = 1; i <= max; ++i) countPowers[i] = powNCache[divisorCounts[i]];
+
+		byte[] mu = NumberTheory.mobius(max);
+		long[] moebius = new long[max + 1];
+		for (int i = 1; i <= max; ++i) moebius[i] = ARITH.reduce(mu[i]);
+		return Dirichlet.convolve(countPowers, Dirichlet.power(moebius, 2, MOD), MOD);
 	}
 
 	private static long[] buildPowNCache(int maxBase) {
 		long[] cache = new long[maxBase + 1];
-
-		boolean[] nBase2Cache = buildNBase2Cache();
-		System.out.println("NBase2 cache built.");
-		cache[1] = 1;
-		for (int i = 2; i <= maxBase; ++i) cache[i] = quickPowN(nBase2Cache, i);
-
+		for (int i = 1; i <= maxBase; ++i) cache[i] = ARITH.pow(i, N);
 		return cache;
 	}
-
-	private static boolean[] buildNBase2Cache() {
-		int digits = (int) Math.round(Math.log(N) / Math.log(2));
-		boolean[] cache = new boolean[digits + 1];
-		for (int i = 0; i < digits; ++i) cache[i] = (N & (1L << i)) != 0;
-		return cache;
-	}
-
-	private static long quickPowN(boolean[] nBase2Cache, int base) {
-		long[] basePow2 = new long[nBase2Cache.length];
-		long last = basePow2[0] = base;
-		for (int i = 1; i < basePow2.length; ++i)
-			last = basePow2[i] = modMult(last, last);
-		long ans = 1;
-		for (int i = 0; i < basePow2.length; ++i)
-			if (nBase2Cache[i]) ans = modMult(ans, basePow2[i]);
-		return ans;
-	}
 }
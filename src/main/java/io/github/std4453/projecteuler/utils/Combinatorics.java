@@ -0,0 +1,145 @@
+package io.github.std4453.projecteuler.utils;
+
+/**
+ * {@code Combinatorics} counts combinations modulo a prime {@code p}, using tables of
+ * {@code n!}, {@code 1 / n!} and {@code 1 / n} for all {@code n} up to a given {@code
+ * max}, built once in {@code O(max)} time with a single modular inverse:<br />
+ * {@code 1 / max!} is inverted directly, then {@code 1 / (n - 1)! = n / n!} going
+ * down, and {@code 1 / n = (n - 1)! / n!}.<br />
+ * With the tables, {@code C(n, k) = n! / (k! * (n - k)!)} takes {@code O(1)} time for
+ * {@code n <= max}. Since {@code n!} is divisible by {@code p} for {@code n >= p}, the
+ * tables stop at {@code p - 1}, and when they are complete, larger {@code n} are
+ * handled by <i>Lucas' theorem</i>:<br />
+ * {@code C(n, k) = C(n mod p, k mod p) * C(n / p, k / p) (mod p)}<br />
+ * that is, the product of the binomials of the base-{@code p} digits, in {@code
+ * O(log_p(n))} time.<br />
+ * For prime powers, see {@link PrimePowerCombinatorics}.
+ */
+public class Combinatorics {
+	private final long p;
+	private final int max;
+	private final ModArith arith;
+	private final long[] factorials;
+	private final long[] inverseFactorials;
+	private final long[] inverses;
+
+	/**
+	 * Build the tables up to {@code min(max, p - 1)} modulo {@code p}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code max < 1} or {@code p} is not a prime.
+	 */
+	public Combinatorics(int max, long p) {
+		if (max < 1 || max == Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Illegal max: " + max);
+		if (!Primes.isPrime(p)) throw new IllegalArgumentException("Illegal p: " + p);
+		this.p = p;
+		this.max = (int) Math.min(max, p - 1);
+		ModArith arith = this.arith = new ModArith(p);
+
+		int size = this.max + 1;
+		long[] factorials = this.factorials = new long[size];
+		long[] inverseFactorials = this.inverseFactorials = new long[size];
+		long[] inverses = this.inverses = new long[size];
+		factorials[0] = 1;
+		for (int n = 1; n < size; ++n)
+			factorials[n] = arith.multiply(factorials[n - 1], n);
+		inverseFactorials[this.max] = arith.inverse(factorials[this.max]);
+		for (int n = this.max; n > 0; --n) {
+			inverseFactorials[n - 1] = arith.multiply(inverseFactorials[n], n);
+			inverses[n] = arith.multiply(inverseFactorials[n], factorials[n - 1]);
+		}
+	}
+
+	public long getP() {
+		return this.p;
+	}
+
+	/**
+	 * Return the largest {@code n} in the tables.
+	 */
+	public int getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Return {@code n! mod p}.
+	 *
+	 * @throws ArrayIndexOutOfBoundsException
+	 * 		If {@code n} is not in {@code [0, getMax()]}.
+	 */
+	public long factorial(int n) {
+		return this.factorials[n];
+	}
+
+	/**
+	 * Return {@code 1 / n! mod p}.
+	 *
+	 * @throws ArrayIndexOutOfBoundsException
+	 * 		If {@code n} is not in {@code [0, getMax()]}.
+	 */
+	public long inverseFactorial(int n) {
+		return this.inverseFactorials[n];
+	}
+
+	/**
+	 * Return {@code 1 / n mod p}.
+	 *
+	 * @throws ArrayIndexOutOfBoundsException
+	 * 		If {@code n} is not in {@code [1, getMax()]}.
+	 */
+	public long inverse(int n) {
+		return this.inverses[n];
+	}
+
+	/**
+	 * Return {@code C(n, k) mod p}, which is 0 if {@code k < 0} or {@code k > n}.<br />
+	 * This takes {@code O(1)} time for {@code n <= getMax()}, and uses Lucas' theorem
+	 * otherwise.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0}, or {@code n > getMax()} and the tables do not reach
+	 * 		{@code p - 1}.
+	 */
+	public long binomial(long n, long k) {
+		if (n < 0) throw new IllegalArgumentException("Illegal n: " + n);
+		if (k < 0 || k > n) return 0;
+		if (n <= this.max) return this.smallBinomial((int) n, (int) k);
+		if (this.max < this.p - 1)
+			throw new IllegalArgumentException("Tables too short for Lucas: " + n);
+		long result = 1;
+		for (; n > 0 && result != 0; n /= this.p, k /= this.p)
+			result = this.arith.multiply(result,
+					this.smallBinomial((int) (n % this.p), (int) (k % this.p)));
+		return result;
+	}
+
+	private long smallBinomial(int n, int k) {
+		if (k > n) return 0;
+		long denominator = this.arith.multiply(this.inverseFactorials[k],
+				this.inverseFactorials[n - k]);
+		return this.arith.multiply(this.factorials[n], denominator);
+	}
+
+	/**
+	 * Return the <i>multinomial coefficient</i> {@code (k1 + k2 + ... + km)! / (k1! *
+	 * k2! * ... * km!) mod p}, which counts the arrangements of {@code k1 + ... + km}
+	 * items of {@code m} kinds, e.g. the monotonic lattice paths in {@code m}
+	 * dimensions. Each {@code ki} must be non-negative.<br />
+	 * It is the product of {@code C(k1 + ... + ki, ki)} for {@code i = 2..m}, so that
+	 * it takes {@code O(m)} time when the sum is at most {@code getMax()}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If any {@code ki < 0}, or the sum exceeds {@code getMax()} and the tables
+	 * 		do not reach {@code p - 1}.
+	 */
+	public long multinomial(long... ks) {
+		long result = this.arith.reduce(1), sum = 0;
+		for (long k : ks) {
+			if (k < 0) throw new IllegalArgumentException("Illegal k: " + k);
+			sum += k;
+			result = this.arith.multiply(result, this.binomial(sum, k));
+		}
+		return result;
+	}
+}
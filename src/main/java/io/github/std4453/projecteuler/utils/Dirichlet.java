@@ -0,0 +1,194 @@
+package io.github.std4453.projecteuler.utils;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * {@code Dirichlet} implements the <i>Dirichlet convolution</i> {@code (f * g)(n) =
+ * sum(f(d) * g(n / d), d | n)} of arithmetic functions, modulo a given modulus, or
+ * modulo {@code 2^64} (that is, with plain overflowing {@code long} arithmetic) when
+ * the modulus is 0.<br />
+ * Functions are given as dense tables {@code f[n]} for {@code n} in {@code [1, max]},
+ * where {@code f[0]} is ignored and all the values must be in {@code [0, modulus)}.
+ * Convolution, like the identity {@code eps} ({@code 1} at {@code 1}, {@code 0}
+ * elsewhere), is associative and commutative, so that inverses and powers are
+ * well-defined. For example, {@code mu} is the inverse of the constant function
+ * {@code 1}, {@code d = 1 * 1} and {@code sigma = 1 * id}.<br />
+ * The summatory function of {@code f * g} at the points {@code v = n / i} is
+ * calculated from the dense tables up to {@code sqrt(n)} and the summatory functions
+ * of {@code f} and {@code g} at the same points by {@link #convolve(long[],
+ * QuotientSums, long[], QuotientSums, long)}, without any table up to {@code n}.
+ */
+public class Dirichlet {
+	private static final int CHUNK = 1 << 16;  // outputs per parallel task
+
+	/**
+	 * Return the identity {@code eps} up to {@code max}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code max < 1} or {@code modulus < 0}.
+	 */
+	public static long[] identity(int max, long modulus) {
+		if (max < 1) throw new IllegalArgumentException("Illegal max: " + max);
+		ModArith arith = new ModArith(modulus);
+		long[] eps = new long[max + 1];
+		eps[1] = arith.reduce(1);
+		return eps;
+	}
+
+	/**
+	 * Return {@code f * g} up to the smaller length of the tables, in {@code O(max *
+	 * log(max))} time.<br />
+	 * The outputs are split into chunks, and the pairs {@code d * k} falling in each
+	 * chunk are enumerated as those with {@code d <= sqrt(hi)} and those with {@code k
+	 * <= sqrt(hi) < d}, so that the chunks are calculated independently in parallel,
+	 * with an overhead of only {@code O(sqrt(max))} each.
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If any table is empty or {@code modulus < 0}.
+	 */
+	public static long[] convolve(long[] f, long[] g, long modulus) {
+		int max = Math.min(checkTable(f), checkTable(g));
+		ModArith arith = new ModArith(modulus);
+		long[] h = new long[max + 1];
+		IntStream.rangeClosed(0, max / CHUNK).parallel().forEach(chunk -> {
+			// outputs in [lo, hi)
+			int lo = Math.max(chunk * CHUNK, 1);
+			int hi = (int) Math.min((long) chunk * CHUNK + CHUNK, max + 1L);
+			int root = (int) MathsHelper.isqrt(hi - 1);
+			for (int d = 1; d <= root; ++d) {
+				long fd = f[d];
+				if (fd == 0) continue;
+				for (int k = (lo + d - 1) / d, n = d * k; n < hi; ++k, n += d)
+					h[n] = arith.add(h[n], arith.multiply(fd, g[k]));
+			}
+			for (int k = 1; k <= root; ++k) {
+				long gk = g[k];
+				if (gk == 0) continue;
+				int d = Math.max((lo + k - 1) / k, root + 1);
+				for (long n = (long) d * k; n < hi; ++d, n += k)
+					h[(int) n] = arith.add(h[(int) n], arith.multiply(f[d], gk));
+			}
+		});
+		return h;
+	}
+
+	/**
+	 * Return the inverse {@code g} of {@code f}, that is, {@code f * g = eps}, in
+	 * {@code O(max * log(max))} time.<br />
+	 * {@code g(1) = 1 / f(1)}, and for {@code n > 1}:<br />
+	 * {@code g(n) = -sum(f(d) * g(n / d), d | n, d > 1) / f(1)}<br />
+	 * where the sums are accumulated in place, by adding the contributions of {@code
+	 * g(k)} to all its multiples as soon as it is known.
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If the table is empty, {@code modulus < 0} or {@code f(1)} is not invertible
+	 * 		modulo {@code modulus}.
+	 */
+	public static long[] inverse(long[] f, long modulus) {
+		int max = checkTable(f);
+		ModArith arith = new ModArith(modulus);
+		long inverse = arith.inverse(f[1]), negative = arith.negate(inverse);
+		long[] g = new long[max + 1];
+		for (int k = 1; k <= max; ++k) {
+			long gk = g[k] = k == 1 ? inverse : arith.multiply(negative, g[k]);
+			if (gk == 0) continue;
+			for (int d = 2, limit = max / k; d <= limit; ++d)
+				g[d * k] = arith.add(g[d * k], arith.multiply(f[d], gk));
+		}
+		return g;
+	}
+
+	/**
+	 * Return {@code f^k}, the convolution of {@code k} copies of {@code f} (or of its
+	 * inverse, if {@code k < 0}), by binary exponentiation with {@code O(log(|k|))}
+	 * convolutions.
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If the table is empty, {@code modulus < 0} or {@code k < 0} and {@code f(1)}
+	 * 		is not invertible modulo {@code modulus}.
+	 */
+	public static long[] power(long[] f, int k, long modulus) {
+		int max = checkTable(f);
+		long[] base = k < 0 ? inverse(f, modulus) : f, result = null;  // null for eps
+		for (long e = Math.abs((long) k); e > 0; e >>= 1) {
+			if ((e & 1) != 0)
+				result = result == null ? base.clone() : convolve(result, base, modulus);
+			if (e > 1) base = convolve(base, base, modulus);
+		}
+		return result == null ? identity(max, modulus) : result;
+	}
+
+	/**
+	 * Return the prefix sums {@code F(n) = f(1) + f(2) + ... + f(n)} of the table.
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If the table is empty or {@code modulus < 0}.
+	 */
+	public static long[] prefixSums(long[] f, long modulus) {
+		int max = checkTable(f);
+		ModArith arith = new ModArith(modulus);
+		long[] sums = new long[max + 1];
+		for (int n = 1; n <= max; ++n) sums[n] = arith.add(sums[n - 1], f[n]);
+		return sums;
+	}
+
+	/**
+	 * Return the summatory function {@code H} of {@code h = f * g} at the points {@code
+	 * n / i}, evaluated lazily, where {@code F} and {@code G} are the summatory
+	 * functions of {@code f} and {@code g} at the same points, and the tables of {@code
+	 * f} and {@code g} go up to at least {@code sqrt(n)}.<br />
+	 * {@code H(x)} sums {@code f(d) * g(k)} over all the pairs with {@code d * k <= x},
+	 * which by the <i>Dirichlet hyperbola method</i> with {@code s = floor(sqrt(x))}
+	 * is:<br />
+	 * {@code H(x) = sum(f(d) * G(x / d), d = 1..s) + sum(g(k) * F(x / k), k = 1..s) -
+	 * F(s) * G(s)}<br />
+	 * so that each point takes {@code O(sqrt(x))} time, and all of them {@code
+	 * O(n^(3/4))}.
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code F} and {@code G} are at different points, any table is shorter
+	 * 		than {@code sqrt(n)} or {@code modulus < 0}.
+	 */
+	public static QuotientSums convolve(long[] f, QuotientSums sumF, long[] g,
+										QuotientSums sumG, long modulus) {
+		long n = sumF.getN();
+		if (sumG.getN() != n)
+			throw new IllegalArgumentException("Different points: " + sumG.getN());
+		int sqrt = (int) MathsHelper.isqrt(n);
+		if (Math.min(checkTable(f), checkTable(g)) < sqrt)
+			throw new IllegalArgumentException("Table too short: " + sqrt);
+		ModArith arith = new ModArith(modulus);
+		long[] prefixF = prefixSums(Arrays.copyOf(f, sqrt + 1), modulus);
+		long[] prefixG = prefixSums(Arrays.copyOf(g, sqrt + 1), modulus);
+		return new QuotientSums(n, x -> {
+			int s = (int) MathsHelper.isqrt(x);
+			long sum = arith.negate(arith.multiply(prefixF[s], prefixG[s]));
+			for (int i = 1; i <= s; ++i) {
+				sum = arith.add(sum, arith.multiply(f[i], sumG.get(x / i)));
+				sum = arith.add(sum, arith.multiply(g[i], sumF.get(x / i)));
+			}
+			return sum;
+		});
+	}
+
+	private static int checkTable(long[] f) {
+		if (f.length < 2) throw new IllegalArgumentException("Empty table");
+		return f.length - 1;
+	}
+}
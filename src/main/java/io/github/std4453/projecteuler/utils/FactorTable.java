@@ -0,0 +1,189 @@
+package io.github.std4453.projecteuler.utils;
+
+import java.util.stream.IntStream;
+
+/**
+ * {@code FactorTable} holds the prime factorizations of all the integers in {@code [1,
+ * max]} in one flat structure, using the <i>compressed sparse row</i> (CSR) layout:
+ * the factors of {@code n} are {@code primes[i]^exponents[i]} for {@code i} in {@code
+ * [offsets[n], offsets[n + 1])}, with the primes in ascending order.<br />
+ * This takes {@code 4} bytes per integer plus {@code 5} bytes per prime factor, and
+ * since the average number of distinct prime factors is only about {@code ln(ln(max))},
+ * factorizing {@code 1..10^8} takes about 2GB, instead of the tens of GB that
+ * {@code 10^8} separate {@link IntFactorized} instances would.<br />
+ * The table is built from a {@link SmallestPrimeFactors} table in two passes, first
+ * counting the prime factors of every integer to get the offsets and then filling
+ * them in. Both passes work on independent chunks and can therefore run in parallel.
+ */
+public class FactorTable {
+	private static final int CHUNK = 1 << 16;  // integers per parallel task
+
+	/**
+	 * {@code FactorConsumer} receives the factorization of one integer from {@link
+	 * #forEach(FactorConsumer)} as a slice of the table's arrays.
+	 */
+	@FunctionalInterface
+	public interface FactorConsumer {
+		/**
+		 * Accept the factors {@code primes[i]^exponents[i]} of {@code n} for {@code i}
+		 * in {@code [from, to)}. The arrays belong to the table and must not be
+		 * modified.
+		 */
+		void accept(int n, int[] primes, byte[] exponents, int from, int to);
+	}
+
+	private final int max;
+	private final int[] offsets;
+	private final int[] primes;
+	private final byte[] exponents;
+
+	/**
+	 * Build the table sequentially.
+	 *
+	 * @see #FactorTable(int, boolean)
+	 */
+	public FactorTable(int max) {
+		this(max, false);
+	}
+
+	/**
+	 * Build the table for all the integers in {@code [1, max]}.
+	 *
+	 * @param parallel
+	 * 		Whether to count and fill in the factors of different chunks in parallel.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code max < 1} or {@code max == Integer.MAX_VALUE}.
+	 */
+	public FactorTable(int max, boolean parallel) {
+		SmallestPrimeFactors spf = new SmallestPrimeFactors(max);
+		this.max = max;
+		int[] offsets = this.offsets = new int[max + 2];
+
+		// number of distinct prime factors of n goes to offsets[n + 1]
+		chunks(max, parallel).forEach(chunk -> {
+			for (int n = Math.max(chunk, 2), end = chunkEnd(chunk, max); n < end; ++n) {
+				int count = 0;
+				for (int m = n; m > 1; ++count) {
+					int p = spf.get(m);
+					do m /= p; while (spf.get(m) == p);
+				}
+				offsets[n + 1] = count;
+			}
+		});
+		long total = 0;
+		for (int n = 1; n <= max; ++n) {
+			total += offsets[n + 1];
+			if (total > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Too many factors: " + max);
+			offsets[n + 1] = (int) total;
+		}
+
+		int[] primes = this.primes = new int[(int) total];
+		byte[] exponents = this.exponents = new byte[(int) total];
+		chunks(max, parallel).forEach(chunk -> {
+			for (int n = Math.max(chunk, 2), end = chunkEnd(chunk, max); n < end; ++n) {
+				int index = offsets[n];
+				for (int m = n; m > 1; ++index) {
+					int p = spf.get(m), expo = 0;
+					do {
+						m /= p;
+						++expo;
+					} while (spf.get(m) == p);
+					primes[index] = p;
+					exponents[index] = (byte) expo;
+				}
+			}
+		});
+	}
+
+	private static IntStream chunks(int max, boolean parallel) {
+		IntStream chunks = IntStream.rangeClosed(0, max / CHUNK).map(i -> i * CHUNK);
+		return parallel ? chunks.parallel() : chunks;
+	}
+
+	private static int chunkEnd(int chunk, int max) {
+		return (int) Math.min((long) chunk + CHUNK, max + 1L);
+	}
+
+	public int getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Return the number of distinct prime factors of {@code n}.
+	 *
+	 * @throws ArrayIndexOutOfBoundsException
+	 * 		If {@code n} is not in {@code [0, max]}.
+	 */
+	public int size(int n) {
+		return this.offsets[n + 1] - this.offsets[n];
+	}
+
+	/**
+	 * Return the {@code index}-th smallest prime factor of {@code n}.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		If {@code index} is not in {@code [0, size(n))}.
+	 */
+	public int getBase(int n, int index) {
+		return this.primes[this.checkIndex(n, index)];
+	}
+
+	/**
+	 * Return the exponent of the {@code index}-th smallest prime factor of {@code n}.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		If {@code index} is not in {@code [0, size(n))}.
+	 */
+	public int getExponent(int n, int index) {
+		return this.exponents[this.checkIndex(n, index)];
+	}
+
+	private int checkIndex(int n, int index) {
+		if (index < 0 || index >= this.size(n))
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return this.offsets[n] + index;
+	}
+
+	/**
+	 * Return the factorization of {@code n} as a new {@link IntFactorized}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n} is not in {@code [1, max]}.
+	 */
+	public IntFactorized get(int n) {
+		if (n < 1 || n > this.max) throw new IllegalArgumentException("Illegal n: " + n);
+		int from = this.offsets[n], size = this.offsets[n + 1] - from;
+		int[] bases = new int[size], exponents = new int[size];
+		for (int i = 0; i < size; ++i) {
+			bases[i] = this.primes[from + i];
+			exponents[i] = this.exponents[from + i];
+		}
+		return new IntFactorized(bases, exponents, size);
+	}
+
+	/**
+	 * Invoke {@code action} on the factorization of every integer in {@code [1, max]}
+	 * in ascending order, without any allocation.
+	 */
+	public void forEach(FactorConsumer action) {
+		for (int n = 1; n <= this.max; ++n)
+			action.accept(n, this.primes, this.exponents, this.offsets[n],
+					this.offsets[n + 1]);
+	}
+
+	/**
+	 * Invoke {@code action} on the factorization of every integer in {@code [1, max]}
+	 * in parallel, in no particular order. {@code action} must therefore be
+	 * thread-safe.
+	 */
+	public void parallelForEach(FactorConsumer action) {
+		chunks(this.max, true).forEach(chunk -> {
+			int end = chunkEnd(chunk, this.max);
+			for (int n = Math.max(chunk, 1); n < end; ++n)
+				action.accept(n, this.primes, this.exponents, this.offsets[n],
+						this.offsets[n + 1]);
+		});
+	}
+}
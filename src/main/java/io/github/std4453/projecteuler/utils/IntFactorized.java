@@ -1,42 +1,65 @@
 package io.github.std4453.projecteuler.utils;
 
+import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.TreeMap;
-import java.util.function.BiFunction;
+import java.util.function.IntBinaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static io.github.std4453.projecteuler.utils.MathsHelper.pow;
-import static io.github.std4453.projecteuler.utils.StreamUtils.limitUntil;
 
 /**
  * {@code IntFactorized} represent an prime-factorized integer containing a sorted list
- * of prime factors, while providing several handy methods.
+ * of prime factors, while providing several handy methods.<br />
+ * The factors are stored in two parallel arrays, the bases in ascending order and
+ * their exponents, which are always positive. Compared with a {@code TreeMap<Integer,
+ * Integer>}, this saves a tree node and two boxed objects per factor, and merging two
+ * {@link IntFactorized} is a single linear pass over both arrays.
  */
 public class IntFactorized implements Iterable<Map.Entry<Integer, Integer>> {
-	private TreeMap<Integer, Integer> factors;
+	private static final int[] EMPTY = {};
+	// primes up to sqrt(Integer.MAX_VALUE), enough to factorize any int
+	private static final int[] TRIAL_PRIMES = SegmentedSieve.basePrimes(46340);
+
+	private int[] bases;
+	private int[] exponents;
+	private int size;
 
 	/**
-	 * Constructor that uses the content of the given {@link Map} as
-	 * {@code this.factors}. In order to accelerate further operations, the given
-	 * {@link Map} is converted into a {@link TreeMap}.
+	 * Constructor that uses the content of the given {@link Map} as the factors.
+	 * Factors with exponent 0 are omitted.
 	 */
 	public IntFactorized(Map<Integer, Integer> factors) {
-		this.factors = new TreeMap<>(factors);
-	}
-
-	private IntFactorized(TreeMap<Integer, Integer> factors) {
-		this.factors = factors;
+		this.bases = new int[factors.size()];
+		this.exponents = new int[factors.size()];
+		factors.forEach((base, expo) -> {
+			if (expo == 0) return;
+			this.bases[this.size] = base;
+			this.exponents[this.size] = expo;
+			++this.size;
+		});
+		this.sort();
 	}
 
 	/**
-	 * Constructor that uses the given {@link TreeMap} as {@code this.factors} directly.
-	 * <br />This method should be called only internally.
+	 * Constructor that copies the first {@code size} factors from {@code bases} and
+	 * {@code exponents}, where the bases must be distinct primes in ascending order and
+	 * the exponents must be positive, for example as produced by
+	 * {@link SmallestPrimeFactors#factorize(int, int[], int[])}.
 	 */
+	public IntFactorized(int[] bases, int[] exponents, int size) {
+		this.bases = Arrays.copyOf(bases, size);
+		this.exponents = Arrays.copyOf(exponents, size);
+		this.size = size;
+	}
+
 	private IntFactorized() {
-		this(new TreeMap<>());
+		this.bases = this.exponents = EMPTY;
 	}
 
 	public IntFactorized(int n) {
@@ -49,47 +72,73 @@ public class IntFactorized implements Iterable<Map.Entry<Integer, Integer>> {
 	 * The copying constructor of {@link IntFactorized}.
 	 */
 	public IntFactorized(IntFactorized toCopy) {
-		this();
+		this(toCopy.bases, toCopy.exponents, toCopy.size);
+	}
 
-		this.factors.putAll(toCopy.factors);
+	/**
+	 * Return a new {@link IntFactorized} sharing the arrays of {@code n}, which is safe
+	 * since merging always writes into new arrays.<br />
+	 * This method should be called only internally.
+	 */
+	private static IntFactorized share(IntFactorized n) {
+		IntFactorized result = new IntFactorized();
+		result.bases = n.bases;
+		result.exponents = n.exponents;
+		result.size = n.size;
+		return result;
 	}
 
 	/**
-	 * Factorize the given number and save the results in {@link #factors this.factors}.
+	 * Sort the factors by their bases, since a {@link Map} is not necessarily sorted.
 	 */
-	private void factorize(final int num) {
-		if (num == 1) return; // avoid bug
+	private void sort() {
+		for (int i = 1; i < this.size; ++i) {  // insertion sort, size is at most 9
+			int base = this.bases[i], expo = this.exponents[i], j = i - 1;
+			for (; j >= 0 && this.bases[j] > base; --j) {
+				this.bases[j + 1] = this.bases[j];
+				this.exponents[j + 1] = this.exponents[j];
+			}
+			this.bases[j + 1] = base;
+			this.exponents[j + 1] = expo;
+		}
+	}
 
-		new Runnable() {
-			// Because n is modified inside lambdas, we need a object instance to
-			// contain it, therefore we construct a anonymous Runnable here
-			private int n = num;
+	/**
+	 * Factorize the given number and save the results in {@link #bases this.bases} and
+	 * {@link #exponents this.exponents}.
+	 */
+	private void factorize(int n) {
+		if (n == 1) return; // avoid bug
 
-			@Override
-			public void run() {
-				// Here the factorization algorithm behaves similarly to the answer of
-				// Problem #3. Therefore see comments in Problem003 for more details.
-
-				int sqrt = (int) Math.round(Math.sqrt(num));  // calculate max
-				// NOTE THE "!" UNDER HERE!
-				if (!limitUntil(Primes.intPrimesStream(),  // all primes
-						p -> p > sqrt)  // less than or equal to sqrt(num)
-						.filter(p -> num % p == 0)  // that can divide num
-						.peek(p -> {  // calculate exponent
-							int expo = 0;
-							while (n % p == 0) {
-								n /= p;
-								++expo;
-							}
-							IntFactorized.this.factors.put(p, expo);  // put result
-						})
-						.filter(p -> n == 1)  // if remaining 1
-						.findFirst()  // terminate the stream
-						.isPresent()) {  // otherwise the remaining n is the last factor
-					IntFactorized.this.factors.put(n, 1);  // put it
-				}
-			}
-		}.run();
+		// Here the factorization algorithm behaves similarly to the answer of Problem #3.
+		// Therefore see comments in Problem003 for more details.
+		int[] bases = new int[SmallestPrimeFactors.MAX_FACTORS];
+		int[] exponents = new int[SmallestPrimeFactors.MAX_FACTORS];
+		int size = 0;
+		int twos = Integer.numberOfTrailingZeros(n);
+		if (twos > 0) {
+			bases[size] = 2;
+			exponents[size++] = twos;
+			n >>>= twos;
+		}
+		for (int p : TRIAL_PRIMES) {
+			if (p * p > n) break;
+			if (n % p != 0) continue;
+			int expo = 0;
+			do {
+				n /= p;
+				++expo;
+			} while (n % p == 0);
+			bases[size] = p;
+			exponents[size++] = expo;
+		}
+		if (n > 1) {  // the remaining n is the last factor
+			bases[size] = n;
+			exponents[size++] = 1;
+		}
+		this.bases = bases;
+		this.exponents = exponents;
+		this.size = size;
 	}
 
 	/**
@@ -98,9 +147,10 @@ public class IntFactorized implements Iterable<Map.Entry<Integer, Integer>> {
 	 * applications should cache the result if is to be used many times.
 	 */
 	public int getNumber() {
-		return this.stream().mapToInt(factor ->  // map factor to power
-				pow(factor.getKey(), factor.getValue()))
-				.reduce(1, (a, b) -> a * b);  // multiply them
+		int product = 1;
+		for (int i = 0; i < this.size; ++i)
+			product *= pow(this.bases[i], this.exponents[i]);
+		return product;
 	}
 
 	/**
@@ -111,8 +161,9 @@ public class IntFactorized implements Iterable<Map.Entry<Integer, Integer>> {
 	 */
 	public int getNumberOfDivisors() {
 		// given exponents k1, k2 ... kn, there are (k1 + 1)(k2 + 1)...(kn + 1) divisors
-		return this.factors.values().stream().mapToInt(n -> n + 1)
-				.reduce(1, (a, b) -> a * b);  // multiply them
+		int product = 1;
+		for (int i = 0; i < this.size; ++i) product *= this.exponents[i] + 1;
+		return product;
 	}
 
 	/**
@@ -126,9 +177,12 @@ public class IntFactorized implements Iterable<Map.Entry<Integer, Integer>> {
 		// (1 + p1^1 + p1^2 + ... + p1^k1) * (1 + p2^1 + p2^2 + ... + p2^k2) *
 		// ... * (1 + pn^1 + pn^2 + ... + p1^kn)
 		// and that (1 + p1^1 + p1^2 + ... + p1^k1) = (p1^(k1 + 1) - 1) / (p1 - 1)
-		return this.stream().mapToInt(factor ->
-				(pow(factor.getKey(), factor.getValue() + 1) - 1) / (factor.getKey() - 1))
-				.reduce(1, (a, b) -> a * b);
+		int product = 1;
+		for (int i = 0; i < this.size; ++i) {
+			int p = this.bases[i];
+			product *= (pow(p, this.exponents[i] + 1) - 1) / (p - 1);
+		}
+		return product;
 	}
 
 	/**
@@ -136,11 +190,21 @@ public class IntFactorized implements Iterable<Map.Entry<Integer, Integer>> {
 	 * this} and the given {@link IntFactorized} {@code n}.<br />
 	 * This method modifies the content of {@code this}.
 	 *
-	 * @see #merge(IntFactorized, BiFunction)
+	 * @see #merge(IntFactorized, IntBinaryOperator)
 	 */
 	public void lcm(IntFactorized n) {
-		this.merge(n, (current, newComing) ->
-				current == null ? newComing : Math.max(current, newComing));
+		this.merge(n, Math::max);
+	}
+
+	/**
+	 * Update {@code this} to represent the <i>greatest common divisor</i> of {@code
+	 * this} and the given {@link IntFactorized} {@code n}.<br />
+	 * This method modifies the content of {@code this}.
+	 *
+	 * @see #merge(IntFactorized, IntBinaryOperator)
+	 */
+	public void gcd(IntFactorized n) {
+		this.merge(n, Math::min);
 	}
 
 	/**
@@ -148,41 +212,100 @@ public class IntFactorized implements Iterable<Map.Entry<Integer, Integer>> {
 	 * {@link #getNumber() n.getNumber()}.<br />
 	 * This method modifies the content of {@code this}.
 	 *
-	 * @see #merge(IntFactorized, BiFunction)
+	 * @see #merge(IntFactorized, IntBinaryOperator)
 	 */
 	public void mult(IntFactorized n) {
-		this.merge(n, (current, newComing) ->
-				current == null ? newComing : current + newComing);
+		this.merge(n, (current, newComing) -> current + newComing);
 	}
 
 	/**
 	 * Merge a given non-null {@link IntFactorized} {@code n} into {@code this} using a
-	 * given merging {@link BiFunction function} {@code fn}.<br />
+	 * given merging {@link IntBinaryOperator function} {@code fn}, in a single pass over
+	 * both sorted factor lists.<br />
 	 * This method modifies the content of {@code this}.<br />
 	 *
 	 * @param fn
-	 * 		{@code (current, newComing) -> WHATEVER}. Note that {@code current} and
-	 * 		{@code newComing} are all {@link Integer} instead of {@code int}.
+	 * 		{@code (current, newComing) -> WHATEVER}, where an absent factor has
+	 * 		exponent 0. Factors whose resulting exponent is 0 are removed.
+	 *
+	 * @return {@code false} if any resulting exponent is negative, in which case
+	 * {@code this} is left unchanged.
 	 *
 	 * @throws NullPointerException
 	 * 		If either {@code fn} or {@code n} is {@code null}.
 	 */
-	private void merge(IntFactorized n, BiFunction<Integer, Integer, Integer> fn) {
+	private boolean merge(IntFactorized n, IntBinaryOperator fn) {
 		Objects.requireNonNull(n);
 		Objects.requireNonNull(fn);
-		TreeMap<Integer, Integer> factors = this.factors;  // shortcut
-		n.stream().forEach(factor -> {  // traverse
-			Integer base = factor.getKey();  // use Integer instead of int to avoid
-			Integer expo = factor.getValue();  // unnecessary boxing & unboxing
-			factors.put(base, fn.apply(factors.get(base), expo));  // calculate fn
-		});
+		int[] bases = new int[this.size + n.size];
+		int[] exponents = new int[this.size + n.size];
+		int size = 0;
+		for (int i = 0, j = 0; i < this.size || j < n.size; ) {
+			int base, expo;
+			if (j == n.size || i < this.size && this.bases[i] < n.bases[j]) {
+				base = this.bases[i];
+				expo = fn.applyAsInt(this.exponents[i++], 0);
+			} else if (i == this.size || n.bases[j] < this.bases[i]) {
+				base = n.bases[j];
+				expo = fn.applyAsInt(0, n.exponents[j++]);
+			} else {
+				base = this.bases[i];
+				expo = fn.applyAsInt(this.exponents[i++], n.exponents[j++]);
+			}
+			if (expo < 0) return false;
+			if (expo == 0) continue;
+			bases[size] = base;
+			exponents[size++] = expo;
+		}
+		this.bases = bases;
+		this.exponents = exponents;
+		this.size = size;
+		return true;
 	}
 
 	/**
 	 * Return the amount of prime factors this {@link IntFactorized} contains;
 	 */
 	public int size() {
-		return this.factors.size();
+		return this.size;
+	}
+
+	/**
+	 * Return the {@code index}-th smallest prime factor.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		If {@code index} is not in {@code [0, size())}.
+	 */
+	public int getBase(int index) {
+		if (index < 0 || index >= this.size)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return this.bases[index];
+	}
+
+	/**
+	 * Return the exponent of the {@code index}-th smallest prime factor.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		If {@code index} is not in {@code [0, size())}.
+	 */
+	public int getExponent(int index) {
+		if (index < 0 || index >= this.size)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return this.exponents[index];
+	}
+
+	/**
+	 * Return a copy of the prime factors in ascending order.
+	 */
+	public int[] getBases() {
+		return Arrays.copyOf(this.bases, this.size);
+	}
+
+	/**
+	 * Return a copy of the exponents, in the same order as {@link #getBases()}.
+	 */
+	public int[] getExponents() {
+		return Arrays.copyOf(this.exponents, this.size);
 	}
 
 	@Override
@@ -193,13 +316,31 @@ public class IntFactorized implements Iterable<Map.Entry<Integer, Integer>> {
 				.collect(Collectors.joining("*"));
 	}
 
+	private Map.Entry<Integer, Integer> entry(int index) {
+		return new AbstractMap.SimpleImmutableEntry<>(
+				this.bases[index], this.exponents[index]);
+	}
+
 	@Override
 	public Iterator<Map.Entry<Integer, Integer>> iterator() {
-		return this.factors.entrySet().iterator();
+		return new Iterator<Map.Entry<Integer, Integer>>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.index < IntFactorized.this.size;
+			}
+
+			@Override
+			public Map.Entry<Integer, Integer> next() {
+				if (!this.hasNext()) throw new NoSuchElementException();
+				return IntFactorized.this.entry(this.index++);
+			}
+		};
 	}
 
 	public Stream<Map.Entry<Integer, Integer>> stream() {
-		return this.factors.entrySet().stream();
+		return IntStream.range(0, this.size).mapToObj(this::entry);
 	}
 
 	/**
@@ -218,11 +359,23 @@ public class IntFactorized implements Iterable<Map.Entry<Integer, Integer>> {
 	public static IntFactorized newLCM(IntFactorized a, IntFactorized b) {
 		Objects.requireNonNull(a);
 		Objects.requireNonNull(b);
-		IntFactorized result = new IntFactorized(a);
+		IntFactorized result = share(a);
 		result.lcm(b);
 		return result;
 	}
 
+	/**
+	 * Create a new {@link IntFactorized} to represent the <i>greatest common
+	 * divisor</i> of {@code a} and {@code b} without changing the contents of them.
+	 */
+	public static IntFactorized newGCD(IntFactorized a, IntFactorized b) {
+		Objects.requireNonNull(a);
+		Objects.requireNonNull(b);
+		IntFactorized result = share(a);
+		result.gcd(b);
+		return result;
+	}
+
 	/**
 	 * Create a new {@link IntFactorized} to represent the multiplication
 	 * of {@code a} and {@code b} without changing the contents of them.
@@ -230,7 +383,7 @@ public class IntFactorized implements Iterable<Map.Entry<Integer, Integer>> {
 	public static IntFactorized newMult(IntFactorized a, IntFactorized b) {
 		Objects.requireNonNull(a);
 		Objects.requireNonNull(b);
-		IntFactorized result = new IntFactorized(a);
+		IntFactorized result = share(a);
 		result.mult(b);
 		return result;
 	}
@@ -243,15 +396,8 @@ public class IntFactorized implements Iterable<Map.Entry<Integer, Integer>> {
 	public static IntFactorized divide(IntFactorized a, IntFactorized b) {
 		Objects.requireNonNull(a);
 		Objects.requireNonNull(b);
-
-		TreeMap<Integer, Integer> divided = new TreeMap<>(a.factors);
-		for (Map.Entry<Integer, Integer> factor : b) {
-			Integer base = factor.getKey();
-			int expo = factor.getValue();
-			if (!divided.containsKey(base) || expo > divided.get(base)) return null;
-			divided.put(base, divided.get(base) - expo);
-		}
-
-		return new IntFactorized(divided);
+		IntFactorized result = share(a);
+		return result.merge(b, (current, newComing) -> current - newComing) ?
+				result : null;
 	}
 }
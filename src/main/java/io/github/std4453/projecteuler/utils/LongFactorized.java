@@ -1,42 +1,64 @@
 package io.github.std4453.projecteuler.utils;
 
+import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.TreeMap;
-import java.util.function.BiFunction;
+import java.util.function.IntBinaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static io.github.std4453.projecteuler.utils.MathsHelper.pow;
-import static io.github.std4453.projecteuler.utils.StreamUtils.limitUntil;
 
 /**
  * {@code long} version of {@link IntFactorized}.<br />
  * Documentations are copied directly from {@link IntFactorized}.
  */
 public class LongFactorized implements Iterable<Map.Entry<Long, Integer>> {
-	private TreeMap<Long, Integer> factors;
+	private static final long[] EMPTY_BASES = {};
+	private static final int[] EMPTY = {};
+	private static final int MAX_FACTORS = 15;  // 2 * 3 * 5 * ... * 53 > 2^63
+	private static final int TRIAL_LIMIT = 1 << 10;
+	private static final int[] TRIAL_PRIMES = SegmentedSieve.basePrimes(TRIAL_LIMIT);
+	private static final int BATCH = 1 << 7;  // steps per gcd
+
+	private long[] bases;
+	private int[] exponents;
+	private int size;
 
 	/**
-	 * Constructor that uses the content of the given {@link Map} as
-	 * {@code this.factors}. In order to accelerate further operations, the given
-	 * {@link Map} is converted into a {@link TreeMap}.
+	 * Constructor that uses the content of the given {@link Map} as the factors.
+	 * Factors with exponent 0 are omitted.
 	 */
 	public LongFactorized(Map<Long, Integer> factors) {
-		this.factors = new TreeMap<>(factors);
+		this.bases = new long[factors.size()];
+		this.exponents = new int[factors.size()];
+		factors.forEach((base, expo) -> {
+			if (expo == 0) return;
+			this.bases[this.size] = base;
+			this.exponents[this.size] = expo;
+			++this.size;
+		});
+		this.sort();
 	}
 
 	/**
-	 * Constructor that uses the given {@link TreeMap} as {@code this.factors} directly.
-	 * <br />This method should be called only internally.
+	 * Constructor that copies the first {@code size} factors from {@code bases} and
+	 * {@code exponents}, where the bases must be distinct primes in ascending order and
+	 * the exponents must be positive.
 	 */
-	private LongFactorized(TreeMap<Long, Integer> factors) {
-		this.factors = factors;
+	public LongFactorized(long[] bases, int[] exponents, int size) {
+		this.bases = Arrays.copyOf(bases, size);
+		this.exponents = Arrays.copyOf(exponents, size);
+		this.size = size;
 	}
 
 	private LongFactorized() {
-		this(new TreeMap<>());
+		this.bases = EMPTY_BASES;
+		this.exponents = EMPTY;
 	}
 
 	public LongFactorized(long n) {
@@ -49,47 +71,129 @@ public class LongFactorized implements Iterable<Map.Entry<Long, Integer>> {
 	 * The copying constructor of {@link LongFactorized}.
 	 */
 	public LongFactorized(LongFactorized toCopy) {
-		this();
+		this(toCopy.bases, toCopy.exponents, toCopy.size);
+	}
 
-		this.factors.putAll(toCopy.factors);
+	/**
+	 * Return a new {@link LongFactorized} sharing the arrays of {@code n}, which is safe
+	 * since merging always writes into new arrays.<br />
+	 * This method should be called only internally.
+	 */
+	private static LongFactorized share(LongFactorized n) {
+		LongFactorized result = new LongFactorized();
+		result.bases = n.bases;
+		result.exponents = n.exponents;
+		result.size = n.size;
+		return result;
 	}
 
 	/**
-	 * Factorize the given number and save the results in {@link #factors this.factors}.
+	 * Sort the factors by their bases, since a {@link Map} is not necessarily sorted.
 	 */
-	private void factorize(final long num) {
-		if (num == 1) return; // avoid bug
+	private void sort() {
+		for (int i = 1; i < this.size; ++i) {  // insertion sort, size is at most 15
+			long base = this.bases[i];
+			int expo = this.exponents[i], j = i - 1;
+			for (; j >= 0 && this.bases[j] > base; --j) {
+				this.bases[j + 1] = this.bases[j];
+				this.exponents[j + 1] = this.exponents[j];
+			}
+			this.bases[j + 1] = base;
+			this.exponents[j + 1] = expo;
+		}
+	}
 
-		new Runnable() {
-			// Because n is modified inside lambdas, we need a object instance to
-			// contain it, therefore we construct a anonymous Runnable here
-			private long n = num;
+	/**
+	 * Factorize the given number and save the results in {@link #bases this.bases} and
+	 * {@link #exponents this.exponents}.<br />
+	 * Unlike {@link IntFactorized}, trial division alone would take up to {@code 10^9}
+	 * divisions for a 64-bit semiprime, therefore only the primes below {@value
+	 * #TRIAL_LIMIT} are tried. What remains is tested by {@link Primes#isPrime(long)}
+	 * and, if composite, split by {@link #pollardBrent(long)} recursively.
+	 */
+	private void factorize(long n) {
+		if (n == 1) return; // avoid bug
 
-			@Override
-			public void run() {
-				// Here the factorization algorithm behaves similarly to the answer of
-				// Problem #3. Therefore see comments in Problem003 for more details.
-
-				long sqrt = Math.round(Math.sqrt(num));  // calculate max
-				// NOTE THE "!" UNDER HERE!
-				if (!limitUntil(Primes.longPrimesStream(),  // all primes
-						p -> p > sqrt)  // less than or equal to sqrt(num)
-						.filter(p -> num % p == 0)  // that can divide num
-						.peek(p -> {  // calculate exponent
-							int expo = 0;
-							while (n % p == 0) {
-								n /= p;
-								++expo;
-							}
-							LongFactorized.this.factors.put(p, expo);  // put result
-						})
-						.filter(p -> n == 1)  // if remaining 1
-						.findFirst()  // terminate the stream
-						.isPresent()) {  // otherwise the remaining n is the last factor
-					LongFactorized.this.factors.put(n, 1);  // put it
+		this.bases = new long[MAX_FACTORS];
+		this.exponents = new int[MAX_FACTORS];
+		int twos = Long.numberOfTrailingZeros(n);
+		if (twos > 0) {
+			this.add(2, twos);
+			n >>>= twos;
+		}
+		for (int p : TRIAL_PRIMES) {
+			if ((long) p * p > n) break;
+			if (n % p != 0) continue;
+			int expo = 0;
+			do {
+				n /= p;
+				++expo;
+			} while (n % p == 0);
+			this.add(p, expo);
+		}
+		this.split(n);
+		this.sort();  // pollardBrent() finds factors in no particular order
+	}
+
+	// n has no prime factor below TRIAL_LIMIT
+	private void split(long n) {
+		if (n == 1) return;
+		if (n < (long) TRIAL_LIMIT * TRIAL_LIMIT || Primes.isPrime(n)) {
+			this.add(n, 1);
+			return;
+		}
+		long d = pollardBrent(n);
+		this.split(d);
+		this.split(n / d);
+	}
+
+	private void add(long p, int expo) {
+		for (int i = this.size - 1; i >= 0; --i)
+			if (this.bases[i] == p) {
+				this.exponents[i] += expo;
+				return;
+			}
+		this.bases[this.size] = p;
+		this.exponents[this.size++] = expo;
+	}
+
+	/**
+	 * Find a non-trivial factor of the odd composite {@code n} with <i>Pollard's
+	 * rho</i> algorithm, using Brent's cycle detection.<br />
+	 * The sequence {@code x -> x^2 + c (mod n)} is bound to cycle modulo any prime
+	 * factor {@code p} after about {@code sqrt(p)} steps, when {@code gcd(x - y, n)}
+	 * reveals {@code p}. The differences of {@value #BATCH} steps are multiplied
+	 * together before taking a single gcd, and if the batch overshoots (that is, the
+	 * gcd becomes {@code n}), the steps are replayed one by one. Should that fail too,
+	 * another {@code c} is tried.<br />
+	 * All arithmetic is done in {@link Montgomery} form, which does not change any gcd
+	 * with {@code n} since {@code R = 2^64} is coprime to it.
+	 */
+	private static long pollardBrent(long n) {
+		Montgomery mont = new Montgomery(n);
+		for (long c = 1; ; ++c) {
+			long increment = mont.toMontgomery(c);
+			long x, y = mont.toMontgomery(2), saved = y, product = mont.one(), g = 1;
+			for (long r = 1; g == 1; r <<= 1) {
+				x = y;
+				for (long i = 0; i < r; ++i) y = mont.add(mont.mult(y, y), increment);
+				for (long k = 0; k < r && g == 1; k += BATCH) {
+					saved = y;
+					for (long i = 0, steps = Math.min(BATCH, r - k); i < steps; ++i) {
+						y = mont.add(mont.mult(y, y), increment);
+						product = mont.mult(product, Math.abs(x - y));
+					}
+					g = MathsHelper.gcd(product, n);
+				}
+				if (g == n) {  // overshot, replay the last batch step by step
+					do {
+						saved = mont.add(mont.mult(saved, saved), increment);
+						g = MathsHelper.gcd(Math.abs(x - saved), n);
+					} while (g == 1);
 				}
 			}
-		}.run();
+			if (g != n) return g;
+		}
 	}
 
 	/**
@@ -98,9 +202,10 @@ public class LongFactorized implements Iterable<Map.Entry<Long, Integer>> {
 	 * applications should cache the result if is to be used many times.
 	 */
 	public long getNumber() {
-		return this.stream().mapToLong(factor ->  // map factor to power
-				MathsHelper.pow(factor.getKey(), factor.getValue()))
-				.reduce(1, (a, b) -> a * b);  // multiply them
+		long product = 1;
+		for (int i = 0; i < this.size; ++i)
+			product *= pow(this.bases[i], this.exponents[i]);
+		return product;
 	}
 
 	/**
@@ -111,8 +216,9 @@ public class LongFactorized implements Iterable<Map.Entry<Long, Integer>> {
 	 */
 	public long getNumberOfDivisors() {
 		// given exponents k1, k2 ... kn, there are (k1 + 1)(k2 + 1)...(kn + 1) divisors
-		return this.factors.values().stream().mapToLong(n -> n + 1)
-				.reduce(1, (a, b) -> a * b);  // multiply them
+		long product = 1;
+		for (int i = 0; i < this.size; ++i) product *= this.exponents[i] + 1;
+		return product;
 	}
 
 	/**
@@ -126,9 +232,12 @@ public class LongFactorized implements Iterable<Map.Entry<Long, Integer>> {
 		// (1 + p1^1 + p1^2 + ... + p1^k1) * (1 + p2^1 + p2^2 + ... + p2^k2) *
 		// ... * (1 + pn^1 + pn^2 + ... + p1^kn)
 		// and that (1 + p1^1 + p1^2 + ... + p1^k1) = (p1^(k1 + 1) - 1) / (p1 - 1)
-		return this.stream().mapToLong(factor ->
-				(pow(factor.getKey(), factor.getValue() + 1) - 1) / (factor.getKey() - 1))
-				.reduce(1, (a, b) -> a * b);
+		long product = 1;
+		for (int i = 0; i < this.size; ++i) {
+			long p = this.bases[i];
+			product *= (pow(p, this.exponents[i] + 1) - 1) / (p - 1);
+		}
+		return product;
 	}
 
 	/**
@@ -136,11 +245,21 @@ public class LongFactorized implements Iterable<Map.Entry<Long, Integer>> {
 	 * this} and the given {@link LongFactorized} {@code n}.<br />
 	 * This method modifies the content of {@code this}.
 	 *
-	 * @see #merge(LongFactorized, BiFunction)
+	 * @see #merge(LongFactorized, IntBinaryOperator)
 	 */
 	public void lcm(LongFactorized n) {
-		this.merge(n, (current, newComing) ->
-				current == null ? newComing : Math.max(current, newComing));
+		this.merge(n, Math::max);
+	}
+
+	/**
+	 * Update {@code this} to represent the <i>greatest common divisor</i> of {@code
+	 * this} and the given {@link LongFactorized} {@code n}.<br />
+	 * This method modifies the content of {@code this}.
+	 *
+	 * @see #merge(LongFactorized, IntBinaryOperator)
+	 */
+	public void gcd(LongFactorized n) {
+		this.merge(n, Math::min);
 	}
 
 	/**
@@ -148,41 +267,101 @@ public class LongFactorized implements Iterable<Map.Entry<Long, Integer>> {
 	 * {@link #getNumber() n.getNumber()}.<br />
 	 * This method modifies the content of {@code this}.
 	 *
-	 * @see #merge(LongFactorized, BiFunction)
+	 * @see #merge(LongFactorized, IntBinaryOperator)
 	 */
 	public void mult(LongFactorized n) {
-		this.merge(n, (current, newComing) ->
-				current == null ? newComing : current + newComing);
+		this.merge(n, (current, newComing) -> current + newComing);
 	}
 
 	/**
 	 * Merge a given non-null {@link LongFactorized} {@code n} into {@code this} using a
-	 * given merging {@link BiFunction function} {@code fn}.<br />
+	 * given merging {@link IntBinaryOperator function} {@code fn}, in a single pass over
+	 * both sorted factor lists.<br />
 	 * This method modifies the content of {@code this}.<br />
 	 *
 	 * @param fn
-	 * 		{@code (current, newComing) -> WHATEVER}. Note that {@code current} and
-	 * 		{@code newComing} are all {@link Integer} instead of {@code int}.
+	 * 		{@code (current, newComing) -> WHATEVER}, where an absent factor has
+	 * 		exponent 0. Factors whose resulting exponent is 0 are removed.
+	 *
+	 * @return {@code false} if any resulting exponent is negative, in which case
+	 * {@code this} is left unchanged.
 	 *
 	 * @throws NullPointerException
 	 * 		If either {@code fn} or {@code n} is {@code null}.
 	 */
-	private void merge(LongFactorized n, BiFunction<Integer, Integer, Integer> fn) {
+	private boolean merge(LongFactorized n, IntBinaryOperator fn) {
 		Objects.requireNonNull(n);
 		Objects.requireNonNull(fn);
-		TreeMap<Long, Integer> factors = this.factors;  // shortcut
-		n.stream().forEach(factor -> {  // traverse
-			Long base = factor.getKey();  // use Long instead of long to avoid
-			Integer expo = factor.getValue();  // unnecessary boxing & unboxing
-			factors.put(base, fn.apply(factors.get(base), expo));  // calculate fn
-		});
+		long[] bases = new long[this.size + n.size];
+		int[] exponents = new int[this.size + n.size];
+		int size = 0;
+		for (int i = 0, j = 0; i < this.size || j < n.size; ) {
+			long base;
+			int expo;
+			if (j == n.size || i < this.size && this.bases[i] < n.bases[j]) {
+				base = this.bases[i];
+				expo = fn.applyAsInt(this.exponents[i++], 0);
+			} else if (i == this.size || n.bases[j] < this.bases[i]) {
+				base = n.bases[j];
+				expo = fn.applyAsInt(0, n.exponents[j++]);
+			} else {
+				base = this.bases[i];
+				expo = fn.applyAsInt(this.exponents[i++], n.exponents[j++]);
+			}
+			if (expo < 0) return false;
+			if (expo == 0) continue;
+			bases[size] = base;
+			exponents[size++] = expo;
+		}
+		this.bases = bases;
+		this.exponents = exponents;
+		this.size = size;
+		return true;
 	}
 
 	/**
 	 * Return the amount of prime factors this {@link LongFactorized} contains;
 	 */
 	public int size() {
-		return this.factors.size();
+		return this.size;
+	}
+
+	/**
+	 * Return the {@code index}-th smallest prime factor.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		If {@code index} is not in {@code [0, size())}.
+	 */
+	public long getBase(int index) {
+		if (index < 0 || index >= this.size)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return this.bases[index];
+	}
+
+	/**
+	 * Return the exponent of the {@code index}-th smallest prime factor.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		If {@code index} is not in {@code [0, size())}.
+	 */
+	public int getExponent(int index) {
+		if (index < 0 || index >= this.size)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		return this.exponents[index];
+	}
+
+	/**
+	 * Return a copy of the prime factors in ascending order.
+	 */
+	public long[] getBases() {
+		return Arrays.copyOf(this.bases, this.size);
+	}
+
+	/**
+	 * Return a copy of the exponents, in the same order as {@link #getBases()}.
+	 */
+	public int[] getExponents() {
+		return Arrays.copyOf(this.exponents, this.size);
 	}
 
 	@Override
@@ -193,17 +372,35 @@ public class LongFactorized implements Iterable<Map.Entry<Long, Integer>> {
 				.collect(Collectors.joining("*"));
 	}
 
+	private Map.Entry<Long, Integer> entry(int index) {
+		return new AbstractMap.SimpleImmutableEntry<>(
+				this.bases[index], this.exponents[index]);
+	}
+
 	@Override
 	public Iterator<Map.Entry<Long, Integer>> iterator() {
-		return this.factors.entrySet().iterator();
+		return new Iterator<Map.Entry<Long, Integer>>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.index < LongFactorized.this.size;
+			}
+
+			@Override
+			public Map.Entry<Long, Integer> next() {
+				if (!this.hasNext()) throw new NoSuchElementException();
+				return LongFactorized.this.entry(this.index++);
+			}
+		};
 	}
 
 	public Stream<Map.Entry<Long, Integer>> stream() {
-		return this.factors.entrySet().stream();
+		return IntStream.range(0, this.size).mapToObj(this::entry);
 	}
 
 	public Stream<Integer> expoStream() {
-		return this.factors.values().stream();
+		return IntStream.range(0, this.size).mapToObj(i -> this.exponents[i]);
 	}
 
 	/**
@@ -222,11 +419,23 @@ public class LongFactorized implements Iterable<Map.Entry<Long, Integer>> {
 	public static LongFactorized newLCM(LongFactorized a, LongFactorized b) {
 		Objects.requireNonNull(a);
 		Objects.requireNonNull(b);
-		LongFactorized result = new LongFactorized(a);
+		LongFactorized result = share(a);
 		result.lcm(b);
 		return result;
 	}
 
+	/**
+	 * Create a new {@link LongFactorized} to represent the <i>greatest common
+	 * divisor</i> of {@code a} and {@code b} without changing the contents of them.
+	 */
+	public static LongFactorized newGCD(LongFactorized a, LongFactorized b) {
+		Objects.requireNonNull(a);
+		Objects.requireNonNull(b);
+		LongFactorized result = share(a);
+		result.gcd(b);
+		return result;
+	}
+
 	/**
 	 * Create a new {@link LongFactorized} to represent the multiplication
 	 * of {@code a} and {@code b} without changing the contents of them.
@@ -234,7 +443,7 @@ public class LongFactorized implements Iterable<Map.Entry<Long, Integer>> {
 	public static LongFactorized newMult(LongFactorized a, LongFactorized b) {
 		Objects.requireNonNull(a);
 		Objects.requireNonNull(b);
-		LongFactorized result = new LongFactorized(a);
+		LongFactorized result = share(a);
 		result.mult(b);
 		return result;
 	}
@@ -247,15 +456,8 @@ public class LongFactorized implements Iterable<Map.Entry<Long, Integer>> {
 	public static LongFactorized divide(LongFactorized a, LongFactorized b) {
 		Objects.requireNonNull(a);
 		Objects.requireNonNull(b);
-
-		TreeMap<Long, Integer> divided = new TreeMap<>(a.factors);
-		for (Map.Entry<Long, Integer> factor : b) {
-			Long base = factor.getKey();
-			int expo = factor.getValue();
-			if (!divided.containsKey(base) || expo > divided.get(base)) return null;
-			divided.put(base, divided.get(base) - expo);
-		}
-
-		return new LongFactorized(divided);
+		LongFactorized result = share(a);
+		return result.merge(b, (current, newComing) -> current - newComing) ?
+				result : null;
 	}
 }
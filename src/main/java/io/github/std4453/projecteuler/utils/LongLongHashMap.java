@@ -0,0 +1,97 @@
+package io.github.std4453.projecteuler.utils;
+
+import java.util.Arrays;
+
+/**
+ * A minimal hash map from {@code long} to {@code long}, storing keys and values in
+ * primitive arrays with <i>open addressing</i> and linear probing, so that neither
+ * entries nor boxed values are ever allocated.<br />
+ * Key {@code 0} marks an empty slot and therefore cannot be used.
+ */
+class LongLongHashMap {
+	private static final int INITIAL_CAPACITY = 1 << 4;
+
+	private long[] keys;
+	private long[] values;
+	private int size;
+	private int shift;  // 64 - log2(capacity)
+
+	LongLongHashMap() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Construct a map that holds {@code expectedSize} entries without rehashing.
+	 */
+	LongLongHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 1)) << 2;  // load <= 1/2
+		this.keys = new long[capacity];
+		this.values = new long[capacity];
+		this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	private int slot(long key) {
+		return (int) (key * 0x9E3779B97F4A7C15L >>> this.shift);  // Fibonacci hashing
+	}
+
+	/**
+	 * Return the value of {@code key}, or {@code missing} if there is none.
+	 */
+	long get(long key, long missing) {
+		int mask = this.keys.length - 1;
+		for (int i = this.slot(key); ; i = (i + 1) & mask) {
+			if (this.keys[i] == key) return this.values[i];
+			if (this.keys[i] == 0) return missing;
+		}
+	}
+
+	/**
+	 * Test whether {@code key} has a value, to tell a value equal to {@code missing} in
+	 * {@link #get(long, long)} from none.
+	 */
+	boolean containsKey(long key) {
+		int mask = this.keys.length - 1;
+		for (int i = this.slot(key); ; i = (i + 1) & mask) {
+			if (this.keys[i] == key) return true;
+			if (this.keys[i] == 0) return false;
+		}
+	}
+
+	/**
+	 * Put {@code key -> value} into the map, replacing any old value.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code key == 0}.
+	 */
+	void put(long key, long value) {
+		if (key == 0) throw new IllegalArgumentException("Illegal key: 0");
+		int mask = this.keys.length - 1;
+		int i = this.slot(key);
+		for (; this.keys[i] != 0; i = (i + 1) & mask)
+			if (this.keys[i] == key) {
+				this.values[i] = value;
+				return;
+			}
+		this.keys[i] = key;
+		this.values[i] = value;
+		if (++this.size << 1 > this.keys.length) this.rehash();
+	}
+
+	private void rehash() {
+		long[] keys = this.keys, values = this.values;
+		this.keys = new long[keys.length << 1];
+		this.values = new long[keys.length << 1];
+		--this.shift;
+		this.size = 0;
+		for (int i = 0; i < keys.length; ++i) if (keys[i] != 0) this.put(keys[i], values[i]);
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	void clear() {
+		Arrays.fill(this.keys, 0);
+		this.size = 0;
+	}
+}
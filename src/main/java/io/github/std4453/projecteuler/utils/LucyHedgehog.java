@@ -0,0 +1,192 @@
+package io.github.std4453.projecteuler.utils;
+
+import java.util.stream.IntStream;
+
+import static io.github.std4453.projecteuler.utils.MathsHelper.isqrt;
+
+/**
+ * {@code LucyHedgehog} calculates the sum of {@code p^k} over all primes {@code p <=
+ * v} for every {@code v = x / i} (integer division) at once, using the algorithm
+ * posted by Lucy_Hedgehog on the Project Euler forum of Problem #10.<br />
+ * Let {@code S(v, p)} be the sum of {@code n^k} over all integers {@code n} in {@code
+ * [2, v]} that are either prime or have no prime factor {@code <= p}, then {@code
+ * S(v, p) = S(v, p - 1)} when {@code p} is not prime or {@code p^2 > v}, otherwise:
+ * <br />
+ * {@code S(v, p) = S(v, p - 1) - p^k * (S(v / p, p - 1) - S(p - 1, p - 1))}<br />
+ * and {@code S(v, sqrt(x))} is the sum over primes. Since {@code (x / a) / b = x / (a
+ * * b)}, only the {@code 2 * sqrt(x)} values {@code S(x / i)} are ever needed, which
+ * are stored in two arrays: {@code small[v]} for {@code v <= sqrt(x)} and {@code
+ * large[i] = S(x / i)} for {@code i <= sqrt(x)}.<br />
+ * With {@code k = 0} this counts the primes, i.e. calculates {@code pi(v)}.<br />
+ * All the values are calculated modulo a given modulus {@code m}, or modulo {@code
+ * 2^64} (that is, with plain overflowing {@code long} arithmetic) when {@code m = 0}.
+ * Since the recursion only adds, subtracts and multiplies, the results are exact
+ * modulo {@code 2^64} even if the intermediate values overflow.<br />
+ * The time complexity is {@code O(x^(3/4) / log(x))} and the spacial complexity is
+ * {@code O(sqrt(x))}, so there is no need to enumerate any primes above {@code
+ * sqrt(x)}.
+ */
+public class LucyHedgehog {
+	/**
+	 * Maximum supported exponent {@code k}.
+	 */
+	public static final int MAX_EXPONENT = 3;
+
+	// below this many updates per prime, the parallel version is not worth it
+	private static final int PARALLEL_THRESHOLD = 1 << 15;
+
+	private final long x;
+	private final int exponent;
+	private final ModArith arith;
+	private final int sqrt;
+	private final long[] small;
+	private final long[] large;
+
+	/**
+	 * Construct the table counting primes for {@code x}, calculating everything
+	 * immediately.
+	 *
+	 * @see #LucyHedgehog(long, int, long, boolean)
+	 */
+	public LucyHedgehog(long x, boolean parallel) {
+		this(x, 0, 0, parallel);
+	}
+
+	/**
+	 * Construct the table of sums of {@code p^exponent} for {@code x} modulo {@code
+	 * modulus}, calculating everything immediately.
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 * @param parallel
+	 * 		Whether to split the updates of each prime into parallel tasks, which
+	 * 		speeds up large inputs on multi-core machines.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code x < 1}, {@code modulus < 0} or {@code exponent} is not in {@code
+	 * 		[0, }{@link #MAX_EXPONENT}{@code ]}.
+	 */
+	public LucyHedgehog(long x, int exponent, long modulus, boolean parallel) {
+		if (x < 1) throw new IllegalArgumentException("Illegal x: " + x);
+		if (exponent < 0 || exponent > MAX_EXPONENT)
+			throw new IllegalArgumentException("Illegal exponent: " + exponent);
+		this.x = x;
+		this.exponent = exponent;
+		ModArith arith = this.arith = new ModArith(modulus);
+		this.sqrt = (int) isqrt(x);
+		this.small = new long[this.sqrt + 1];
+		this.large = new long[this.sqrt + 1];
+		// sum of n^k for n in [2, v]
+		for (int v = 1; v <= this.sqrt; ++v)
+			this.small[v] = arith.subtract(this.powerSum(v), arith.reduce(1));
+		for (int k = 1; k <= this.sqrt; ++k)
+			this.large[k] = arith.subtract(this.powerSum(x / k), arith.reduce(1));
+		this.sieve(parallel);
+	}
+
+	private void sieve(boolean parallel) {
+		long x = this.x;
+		int sqrt = this.sqrt;
+		ModArith arith = this.arith;  // shortcut
+		long[] small = this.small, large = this.large;
+		long[] delta = parallel ? new long[sqrt + 1] : null;
+
+		// primes up to sqrt(x); p^k might be 0 modulo the modulus, so primes cannot
+		// be told by comparing small[p] and small[p - 1]
+		int[] oddPrimes = SegmentedSieve.basePrimes(sqrt);
+		for (int i = -1; i < oddPrimes.length; ++i) {
+			int p = i < 0 ? 2 : oddPrimes[i];
+			if (p > sqrt) break;
+			long sum = small[p - 1];  // sum over primes below p
+			long weight = arith.pow(arith.reduce(p), this.exponent);
+			long square = (long) p * p;
+			int maxK = (int) Math.min(sqrt, x / square);  // x / k >= p^2
+			int minV = (int) Math.min(square, sqrt + 1L);  // v >= p^2
+
+			if (parallel && maxK >= PARALLEL_THRESHOLD) {
+				// compute all the differences from the old values first, then apply
+				int prime = p;
+				IntStream.rangeClosed(1, maxK).parallel().forEach(k -> {
+					long d = (long) k * prime;
+					long value = d <= sqrt ? large[(int) d] : small[(int) (x / d)];
+					delta[k] = arith.multiply(weight, arith.subtract(value, sum));
+				});
+				IntStream.rangeClosed(1, maxK).parallel()
+						.forEach(k -> large[k] = arith.subtract(large[k], delta[k]));
+				IntStream.rangeClosed(minV, sqrt).parallel().forEach(v -> delta[v] =
+						arith.multiply(weight, arith.subtract(small[v / prime], sum)));
+				IntStream.rangeClosed(minV, sqrt).parallel()
+						.forEach(v -> small[v] = arith.subtract(small[v], delta[v]));
+				continue;
+			}
+
+			// k * p > k, so large[k * p] is read before it is updated
+			for (int k = 1; k <= maxK; ++k) {
+				long d = (long) k * p;
+				long value = d <= sqrt ? large[(int) d] : small[(int) (x / d)];
+				large[k] = arith.subtract(large[k],
+						arith.multiply(weight, arith.subtract(value, sum)));
+			}
+			// v / p < v, so small[v / p] is read before it is updated
+			for (int v = sqrt; v >= minV; --v)
+				small[v] = arith.subtract(small[v],
+						arith.multiply(weight, arith.subtract(small[v / p], sum)));
+		}
+	}
+
+	/**
+	 * Sum of {@code n^k} for {@code n} in {@code [1, v]}. The divisions in the closed
+	 * forms are carried out on the exact factors before reducing, so that they are
+	 * also valid modulo {@code 2^64} or an arbitrary modulus.
+	 */
+	private long powerSum(long v) {
+		ModArith arith = this.arith;  // shortcut
+		switch (this.exponent) {
+			case 0:  // v
+				return arith.reduce(v);
+			case 1:  // v * (v + 1) / 2
+				return arith.triangle(v);
+			case 2:  // v * (v + 1) * (2 * v + 1) / 6
+				long a = v, b = v + 1, c = 2 * v + 1;
+				if ((a & 1) == 0) a >>= 1;  // exactly one of v and v + 1 is even
+				else b >>= 1;
+				if (a % 3 == 0) a /= 3;  // exactly one of v, v + 1, 2 * v + 1 is
+				else if (b % 3 == 0) b /= 3;  // divisible by 3
+				else c /= 3;
+				return arith.multiply(arith.multiply(arith.reduce(a), arith.reduce(b)),
+						arith.reduce(c));
+			default:  // (v * (v + 1) / 2)^2
+				long half = arith.triangle(v);
+				return arith.multiply(half, half);
+		}
+	}
+
+	/**
+	 * Return the sum of {@code p^k} over all primes {@code p <= v} modulo the modulus,
+	 * where {@code v} must be {@code x / i} for some positive integer {@code i}. When
+	 * the modulus is 0, the returned value should be treated as unsigned.<br />
+	 * With {@code k = 0} it is {@code pi(v)}, the number of primes {@code <= v}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code v} is not in the table.
+	 */
+	public long get(long v) {
+		if (v < 0 || v > this.x) throw new IllegalArgumentException("Not in table: " + v);
+		if (v <= this.sqrt) return this.small[(int) v];
+		long k = this.x / v;
+		if (this.x / k != v) throw new IllegalArgumentException("Not in table: " + v);
+		return this.large[(int) k];
+	}
+
+	public long getX() {
+		return this.x;
+	}
+
+	public int getExponent() {
+		return this.exponent;
+	}
+
+	public long getModulus() {
+		return this.arith.getModulus();
+	}
+}
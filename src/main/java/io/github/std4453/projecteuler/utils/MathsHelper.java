@@ -1,24 +1,271 @@
 package io.github.std4453.projecteuler.utils;
 
+import java.math.BigInteger;
+
 /**
  *
  */
 public class MathsHelper {
 	/**
-	 * Calculate {@code base^pow}, all in {@code ints}.
+	 * {@code 2^61 - 1}, a prime, which is used together with {@code 2^64} by {@link
+	 * #fromResidues(long, long)}.
+	 */
+	public static final long MERSENNE_61 = (1L << 61) - 1;
+
+	private static final BigInteger TWO_64 = BigInteger.ONE.shiftLeft(64);
+
+	// SMALL_POWERS[b][e] = b^e for b < SMALL_BASES, as long as it fits into a long
+	private static final int SMALL_BASES = 64;
+	private static final long[][] SMALL_POWERS = new long[SMALL_BASES][];
+
+	static {
+		for (int b = 0; b < SMALL_BASES; ++b) {
+			LongArrayList powers = new LongArrayList();
+			powers.add(1);
+			for (long power = 1; b >= 2 && power <= Long.MAX_VALUE / b; )
+				powers.add(power *= b);
+			SMALL_POWERS[b] = powers.toLongArray();
+		}
+	}
+
+	/**
+	 * Calculate {@code base^expo}, all in {@code ints}, which overflows silently like
+	 * {@code *} does. A non-positive {@code expo} gives 1.<br />
+	 * Small {@code bases} are looked up in a table, otherwise this uses binary
+	 * exponentiation in {@code O(log(expo))} time.
 	 */
 	public static int pow(int base, int expo) {
+		// the lowest 32 bits of the exact power are the overflowed int power
+		if (base >= 0 && base < SMALL_BASES && expo >= 0 &&
+				expo < SMALL_POWERS[base].length) return (int) SMALL_POWERS[base][expo];
 		int product = 1;
-		for (int i = 0; i < expo; ++i) product *= base;
+		for (; expo > 0; expo >>= 1) {
+			if ((expo & 1) != 0) product *= base;
+			base *= base;
+		}
 		return product;
 	}
 
 	/**
-	 * Calculate {@code base^pow}, all in {@code longs}.
+	 * Calculate {@code base^expo}, all in {@code longs}, which overflows silently like
+	 * {@code *} does. A non-positive {@code expo} gives 1.<br />
+	 * Small {@code bases} are looked up in a table, otherwise this uses binary
+	 * exponentiation in {@code O(log(expo))} time.
 	 */
 	public static long pow(long base, long expo) {
+		if (base >= 0 && base < SMALL_BASES && expo >= 0 &&
+				expo < SMALL_POWERS[(int) base].length)
+			return SMALL_POWERS[(int) base][(int) expo];
 		long product = 1;
-		for (long i = 0; i < expo; ++i) product *= base;
+		for (; expo > 0; expo >>= 1) {
+			if ((expo & 1) != 0) product *= base;
+			base *= base;
+		}
 		return product;
 	}
+
+	/**
+	 * Calculate {@code base^expo} like {@link #pow(int, int)}, but throw on overflow,
+	 * like {@link Math#multiplyExact(int, int)}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code expo < 0}.
+	 * @throws ArithmeticException
+	 * 		If the result overflows an {@code int}.
+	 */
+	public static int powExact(int base, int expo) {
+		return Math.toIntExact(powExact((long) base, expo));
+	}
+
+	/**
+	 * Calculate {@code base^expo} like {@link #pow(long, long)}, but throw on overflow,
+	 * like {@link Math#multiplyExact(long, long)}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code expo < 0}.
+	 * @throws ArithmeticException
+	 * 		If the result overflows a {@code long}.
+	 */
+	public static long powExact(long base, long expo) {
+		if (expo < 0) throw new IllegalArgumentException("Illegal expo: " + expo);
+		if (base >= 0 && base < SMALL_BASES && expo < SMALL_POWERS[(int) base].length)
+			return SMALL_POWERS[(int) base][(int) expo];
+		long product = 1;
+		while (true) {
+			if ((expo & 1) != 0) product = Math.multiplyExact(product, base);
+			if ((expo >>= 1) == 0) return product;
+			// the result is at least as large as this square, so it overflows as well
+			base = Math.multiplyExact(base, base);
+		}
+	}
+
+	/**
+	 * Calculate {@code base^expo} like {@link #pow(long, long)}, but return {@link
+	 * Long#MAX_VALUE} or {@link Long#MIN_VALUE}, depending on the sign of the result,
+	 * if it overflows, which is convenient for bounds.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code expo < 0}.
+	 */
+	public static long saturatedPow(long base, long expo) {
+		try {
+			return powExact(base, expo);
+		} catch (ArithmeticException e) {
+			return base < 0 && (expo & 1) != 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Return {@code 10^n} from a table, in {@code O(1)} time.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n} is not in {@code [0, 18]}.
+	 */
+	public static long powerOf10(int n) {
+		if (n < 0 || n >= SMALL_POWERS[10].length)
+			throw new IllegalArgumentException("Illegal n: " + n);
+		return SMALL_POWERS[10][n];
+	}
+
+	/**
+	 * Calculate {@code base^expo mod modulus}, where {@code modulus = 0} means modulo
+	 * {@code 2^64}, with binary exponentiation by {@link ModArith#pow(long, long)}.<br />
+	 * Applications raising many bases to powers under the same modulus should keep a
+	 * {@link ModArith} instead.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code modulus < 0}, or {@code expo < 0} and {@code base} is not
+	 * 		invertible.
+	 */
+	public static long powMod(long base, long expo, long modulus) {
+		ModArith arith = new ModArith(modulus);
+		return arith.pow(arith.reduce(base), expo);
+	}
+
+	/**
+	 * Calculate {@code floor(sqrt(n))} for a non-negative {@code long n}.<br />
+	 * {@link Math#sqrt(double)} alone is not enough here since a {@code double} cannot
+	 * represent every {@code long} exactly, therefore the result is corrected after
+	 * the floating-point approximation.
+	 */
+	public static long isqrt(long n) {
+		if (n < 0) throw new IllegalArgumentException("Negative argument: " + n);
+		long r = (long) Math.sqrt(n);
+		while (r * r > n) --r;
+		// 3037000499 = floor(sqrt(Long.MAX_VALUE)), avoid overflow of (r + 1)^2
+		while (r < 3037000499L && (r + 1) * (r + 1) <= n) ++r;
+		return r;
+	}
+
+	/**
+	 * Return the high 64 bits of the unsigned 128-bit product of {@code a} and {@code
+	 * b}, both treated as unsigned.<br />
+	 * This is derived from the signed {@link Math#multiplyHigh(long, long)}.
+	 */
+	public static long unsignedMultiplyHigh(long a, long b) {
+		return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+	}
+
+	/**
+	 * Divide the unsigned 128-bit integer {@code high * 2^64 + low} by the unsigned
+	 * {@code divisor}, and return the unsigned quotient, which requires {@code high <
+	 * divisor} (unsigned) so that the quotient fits into 64 bits.<br />
+	 * The algorithm is {@code divlu} from <i>Hacker's Delight</i>, which divides with
+	 * two 64-by-32-bit steps after normalizing the divisor.
+	 *
+	 * @throws ArithmeticException
+	 * 		If the quotient would overflow, including when {@code divisor} is 0.
+	 */
+	public static long divideUnsigned(long high, long low, long divisor) {
+		if (Long.compareUnsigned(high, divisor) >= 0)
+			throw new ArithmeticException("Quotient overflow");
+		if (high == 0) return Long.divideUnsigned(low, divisor);
+
+		final long base = 1L << 32, mask = base - 1;
+		int shift = Long.numberOfLeadingZeros(divisor);
+		divisor <<= shift;  // normalize, so that the highest bit is set
+		long dHigh = divisor >>> 32, dLow = divisor & mask;
+		long n32 = high << shift | (shift == 0 ? 0 : low >>> (64 - shift));
+		long n10 = low << shift;
+		long n1 = n10 >>> 32, n0 = n10 & mask;
+
+		long q1 = Long.divideUnsigned(n32, dHigh);
+		long rHat = n32 - q1 * dHigh;
+		while (Long.compareUnsigned(q1, base) >= 0 ||
+				Long.compareUnsigned(q1 * dLow, rHat << 32 | n1) > 0) {
+			--q1;
+			rHat += dHigh;
+			if (Long.compareUnsigned(rHat, base) >= 0) break;
+		}
+
+		long n21 = (n32 << 32) + n1 - q1 * divisor;
+		long q0 = Long.divideUnsigned(n21, dHigh);
+		rHat = n21 - q0 * dHigh;
+		while (Long.compareUnsigned(q0, base) >= 0 ||
+				Long.compareUnsigned(q0 * dLow, rHat << 32 | n0) > 0) {
+			--q0;
+			rHat += dHigh;
+			if (Long.compareUnsigned(rHat, base) >= 0) break;
+		}
+		return q1 << 32 | q0;
+	}
+
+	/**
+	 * Return the unsigned remainder of {@code high * 2^64 + low} divided by {@code
+	 * divisor}, with the same requirements as {@link #divideUnsigned(long, long,
+	 * long)}.
+	 */
+	public static long remainderUnsigned(long high, long low, long divisor) {
+		// the remainder is less than divisor, so its lowest 64 bits are all of it
+		return low - divideUnsigned(high, low, divisor) * divisor;
+	}
+
+	/**
+	 * Calculate {@code a * b mod m} without overflow, where {@code a} and {@code b}
+	 * must be in {@code [0, m)} and {@code m} must be positive.
+	 */
+	public static long mulMod(long a, long b, long m) {
+		long high = unsignedMultiplyHigh(a, b);
+		if (high == 0) return Long.remainderUnsigned(a * b, m);
+		return remainderUnsigned(high, a * b, m);
+	}
+
+	/**
+	 * Calculate the <i>greatest common divisor</i> of two non-negative {@code longs},
+	 * using the binary GCD algorithm, which replaces divisions with shifts.
+	 */
+	public static long gcd(long a, long b) {
+		if (a == 0) return b;
+		if (b == 0) return a;
+		int shift = Long.numberOfTrailingZeros(a | b);
+		a >>>= Long.numberOfTrailingZeros(a);
+		while (b != 0) {
+			b >>>= Long.numberOfTrailingZeros(b);
+			if (a > b) {
+				long t = a;
+				a = b;
+				b = t;
+			}
+			b -= a;
+		}
+		return a << shift;
+	}
+
+	/**
+	 * Reconstruct a non-negative integer {@code x < 2^64 * (2^61 - 1)} from {@code low =
+	 * x mod 2^64} (treated as unsigned) and {@code mod = x mod (2^61 - 1)}, using the
+	 * <i>Chinese remainder theorem</i>. Larger {@code x}, even below {@code 2^125}, come
+	 * back reduced modulo {@code 2^64 * }{@link #MERSENNE_61}.<br />
+	 * This allows computing large exact sums with overflowing {@code long} arithmetic
+	 * twice, once modulo {@code 2^64} and once modulo {@link #MERSENNE_61}, instead of
+	 * with {@link BigInteger} throughout.
+	 */
+	public static BigInteger fromResidues(long low, long mod) {
+		// x = low + 2^64 * t, where t = (mod - low) / 2^64 (mod 2^61 - 1)
+		BigInteger m = BigInteger.valueOf(MERSENNE_61);
+		BigInteger unsignedLow = new BigInteger(Long.toUnsignedString(low));
+		BigInteger t = BigInteger.valueOf(mod).subtract(unsignedLow)
+				.multiply(TWO_64.modInverse(m)).mod(m);
+		return t.shiftLeft(64).add(unsignedLow);
+	}
 }
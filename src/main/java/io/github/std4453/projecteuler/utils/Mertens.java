@@ -0,0 +1,41 @@
+package io.github.std4453.projecteuler.utils;
+
+/**
+ * {@code Mertens} calculates the <i>Mertens function</i> {@code M(x) = mu(1) + mu(2) +
+ * ... + mu(x)}, where {@code mu} is the <i>Moebius function</i>, for any {@code x}
+ * up to a given limit {@code n} in {@code O(n^(2/3))} time.<br />
+ * Since {@code sum(mu(d), d | k)} is 1 for {@code k = 1} and 0 otherwise, summing it
+ * over {@code k <= x} gives:<br />
+ * {@code sum(M(floor(x / d)), d = 1..x) = 1}, that is, {@code M(x) = 1 -
+ * sum(M(floor(x / d)), d = 2..x)}<br />
+ * which is evaluated by {@link SummatoryFunction} on top of a linear sieve of {@code
+ * mu}. As {@code |M(x)| <= x}, the results are always exact.
+ */
+public class Mertens extends SummatoryFunction {
+	private final int[] small;  // M(v) for v <= sieveLimit
+
+	/**
+	 * Construct an engine for {@code M(x)} with {@code x <= limit}, sieving {@code mu}
+	 * up to {@code limit^(2/3)} immediately.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code limit < 1}.
+	 */
+	public Mertens(long limit) {
+		super(limit, 0);
+		int sieveLimit = this.getSieveLimit();
+		byte[] mu = NumberTheory.mobius(sieveLimit);
+		this.small = new int[sieveLimit + 1];
+		for (int v = 1; v <= sieveLimit; ++v) this.small[v] = this.small[v - 1] + mu[v];
+	}
+
+	@Override
+	protected long sieved(int v) {
+		return this.small[v];
+	}
+
+	@Override
+	protected long convolved(long x) {
+		return 1;
+	}
+}
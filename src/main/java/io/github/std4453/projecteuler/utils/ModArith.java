@@ -0,0 +1,348 @@
+package io.github.std4453.projecteuler.utils;
+
+import static io.github.std4453.projecteuler.utils.MathsHelper.unsignedMultiplyHigh;
+
+/**
+ * {@code ModArith} performs modular arithmetic for a fixed modulus {@code m}, on
+ * residues in {@code [0, m)}, choosing the fastest reduction for the modulus once, in
+ * the constructor:
+ * <ul>
+ * <li>For {@code m < 2^32}, a product of two residues fits in 64 unsigned bits and is
+ * reduced by <i>Barrett reduction</i>: with {@code f = floor((2^64 - 1) / m)}
+ * precomputed, {@code q = (x * f) >> 64} is at most 1 below {@code floor(x / m)}, so
+ * that {@code x - q * m} needs at most one correction, and no division is left.</li>
+ * <li>For odd {@code m >= 2^32}, the 128-bit product is reduced by two {@link
+ * Montgomery} multiplications, {@code (a * b * R^-1) * R^2 * R^-1 = a * b}, each of
+ * which takes only {@link MathsHelper#unsignedMultiplyHigh(long, long)} and plain
+ * multiplications instead of a 128-bit division.</li>
+ * <li>For even {@code m >= 2^32}, it falls back to {@link MathsHelper#mulMod(long,
+ * long, long)}.</li>
+ * <li>For {@code m = 0}, everything is modulo {@code 2^64}, that is, plain
+ * overflowing {@code long} arithmetic, with residues treated as unsigned.</li>
+ * </ul>
+ * The bulk operations on {@code long[]} keep the choice outside the loops, and the
+ * additions are branch-free for {@code m <= 2^62}, so that the JIT compiler can
+ * vectorize them.
+ */
+public class ModArith {
+	private static final int WRAPPING = 0;
+	private static final int BARRETT = 1;
+	private static final int MONTGOMERY = 2;
+	private static final int GENERIC = 3;
+
+	private final long modulus;
+	private final int kind;
+	private final long barrett;  // floor((2^64 - 1) / m), for BARRETT
+	private final Montgomery montgomery;  // for MONTGOMERY
+	private final long r2;  // R^2 mod m, for MONTGOMERY
+
+	/**
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code modulus < 0}.
+	 */
+	public ModArith(long modulus) {
+		if (modulus < 0) throw new IllegalArgumentException("Illegal modulus: " + modulus);
+		this.modulus = modulus;
+		if (modulus == 0) this.kind = WRAPPING;
+		else if (modulus == 1) this.kind = GENERIC;
+		else if (modulus < 1L << 32) this.kind = BARRETT;
+		else if ((modulus & 1) != 0) this.kind = MONTGOMERY;
+		else this.kind = GENERIC;
+
+		this.barrett = this.kind == BARRETT ? Long.divideUnsigned(-1L, modulus) : 0;
+		this.montgomery = this.kind == MONTGOMERY ? new Montgomery(modulus) : null;
+		// R mod m in Montgomery form is R^2 mod m
+		this.r2 = this.kind == MONTGOMERY ?
+				this.montgomery.toMontgomery(this.montgomery.toMontgomery(1)) : 0;
+	}
+
+	public long getModulus() {
+		return this.modulus;
+	}
+
+	/**
+	 * Reduce any {@code long a} into {@code [0, m)}.
+	 */
+	public long reduce(long a) {
+		return this.kind == WRAPPING ? a : Math.floorMod(a, this.modulus);
+	}
+
+	/**
+	 * Calculate {@code a + b mod m}, where {@code a} and {@code b} must be in {@code [0,
+	 * m)}.
+	 */
+	public long add(long a, long b) {
+		if (this.kind == WRAPPING) return a + b;
+		// a + b might exceed 2^63 - 1, therefore compare before adding
+		return a >= this.modulus - b ? a - (this.modulus - b) : a + b;
+	}
+
+	/**
+	 * Calculate {@code a - b mod m}, where {@code a} and {@code b} must be in {@code [0,
+	 * m)}.
+	 */
+	public long subtract(long a, long b) {
+		if (this.kind == WRAPPING) return a - b;
+		return a >= b ? a - b : a - b + this.modulus;
+	}
+
+	/**
+	 * Calculate {@code -a mod m}, where {@code a} must be in {@code [0, m)}.
+	 */
+	public long negate(long a) {
+		return this.subtract(0, a);
+	}
+
+	/**
+	 * Calculate {@code a * b mod m}, where {@code a} and {@code b} must be in {@code [0,
+	 * m)}.
+	 */
+	public long multiply(long a, long b) {
+		switch (this.kind) {
+			case WRAPPING:
+				return a * b;
+			case BARRETT:
+				return this.barrettReduce(a * b);
+			case MONTGOMERY:
+				return this.montgomery.mult(this.montgomery.mult(a, b), this.r2);
+			default:
+				return MathsHelper.mulMod(a, b, this.modulus);
+		}
+	}
+
+	// x mod m for an unsigned x, where m < 2^32
+	private long barrettReduce(long x) {
+		long r = x - unsignedMultiplyHigh(x, this.barrett) * this.modulus;  // < 2 * m
+		return r >= this.modulus ? r - this.modulus : r;
+	}
+
+	/**
+	 * Calculate {@code 1 + 2 + ... + x = x * (x + 1) / 2 mod m} for a non-negative
+	 * {@code x}, halving the even factor before reducing, so that it is also valid
+	 * modulo {@code 2^64} or an even {@code m}. {@code x + 1} is halved as unsigned,
+	 * which keeps {@code x = Long.MAX_VALUE} exact.
+	 */
+	public long triangle(long x) {
+		long a = x, b = x + 1;
+		if ((a & 1) == 0) a >>>= 1;
+		else b >>>= 1;
+		return this.multiply(this.reduce(a), this.reduce(b));
+	}
+
+	/**
+	 * Calculate {@code base^expo mod m} using binary exponentiation, where {@code base}
+	 * must be in {@code [0, m)}. A negative {@code expo} raises the inverse of {@code
+	 * base} instead.<br />
+	 * For an odd {@code m >= 2^32}, everything is done in Montgomery form, converting
+	 * only once in both directions.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code expo < 0} and {@code base} is not invertible.
+	 */
+	public long pow(long base, long expo) {
+		if (expo < 0) {
+			base = this.inverse(base);
+			expo = -expo;  // Long.MIN_VALUE stays, but is shifted as unsigned below
+		}
+		if (this.kind == MONTGOMERY) {
+			Montgomery montgomery = this.montgomery;  // shortcut
+			long power = montgomery.toMontgomery(base), result = montgomery.one();
+			for (; expo != 0; expo >>>= 1) {
+				if ((expo & 1) != 0) result = montgomery.mult(result, power);
+				power = montgomery.mult(power, power);
+			}
+			return montgomery.fromMontgomery(result);
+		}
+		long result = this.reduce(1);
+		for (; expo != 0; expo >>>= 1) {
+			if ((expo & 1) != 0) result = this.multiply(result, base);
+			base = this.multiply(base, base);
+		}
+		return result;
+	}
+
+	/**
+	 * Calculate the matrix product {@code a * b mod m}, where the entries must be in
+	 * {@code [0, m)}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If the number of columns of {@code a} differs from the number of rows of
+	 * 		{@code b}.
+	 */
+	public long[][] multiply(long[][] a, long[][] b) {
+		int columns = b.length == 0 ? 0 : b[0].length;
+		long[][] result = new long[a.length][columns];
+		for (int i = 0; i < a.length; ++i) {
+			if (a[i].length != b.length)
+				throw new IllegalArgumentException("Illegal dimensions: " + a[i].length +
+						" * " + b.length);
+			long[] row = result[i];  // shortcut
+			for (int k = 0; k < b.length; ++k) {
+				long factor = a[i][k];
+				if (factor == 0) continue;
+				for (int j = 0; j < columns; ++j)
+					row[j] = this.add(row[j], this.multiply(factor, b[k][j]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Calculate {@code matrix^expo mod m} for a square {@code matrix} using binary
+	 * exponentiation, in {@code O(n^3 * log(expo))} time, which evaluates linear
+	 * recurrences, e.g. {@code [[1, 1], [1, 0]]^n = [[F(n + 1), F(n)], [F(n), F(n -
+	 * 1)]]} for the Fibonacci numbers.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code matrix} is not square or {@code expo < 0}.
+	 */
+	public long[][] pow(long[][] matrix, long expo) {
+		if (expo < 0) throw new IllegalArgumentException("Illegal expo: " + expo);
+		int n = matrix.length;
+		for (long[] row : matrix)
+			if (row.length != n) throw new IllegalArgumentException("Not square: " + n +
+					" * " + row.length);
+		long[][] result = new long[n][n];
+		for (int i = 0; i < n; ++i) result[i][i] = this.reduce(1);
+		for (; expo != 0; expo >>= 1) {
+			if ((expo & 1) != 0) result = this.multiply(result, matrix);
+			if (expo > 1) matrix = this.multiply(matrix, matrix);
+		}
+		return result;
+	}
+
+	/**
+	 * Calculate the <i>modular multiplicative inverse</i> of {@code a}, using the
+	 * extended Euclidean algorithm, or Newton's iteration modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code a} is not coprime to {@code m}.
+	 */
+	public long inverse(long a) {
+		if (this.kind == WRAPPING) {
+			if ((a & 1) == 0) throw new IllegalArgumentException("Not invertible: " + a);
+			// every step doubles the number of correct bits, starting from 3
+			long inverse = a;
+			for (int i = 0; i < 5; ++i) inverse *= 2 - a * inverse;
+			return inverse;
+		}
+		// invariants: r = s * a (mod m), oldR = oldS * a (mod m)
+		long oldR = this.reduce(a), r = this.modulus, oldS = 1, s = 0;
+		while (r != 0) {
+			long q = oldR / r, t = oldR - q * r;
+			oldR = r;
+			r = t;
+			t = oldS - q * s;
+			oldS = s;
+			s = t;
+		}
+		if (oldR != 1) throw new IllegalArgumentException("Not invertible: " + a);
+		return Math.floorMod(oldS, this.modulus);
+	}
+
+	/**
+	 * Calculate the inverses of all the {@code values} with a single {@link
+	 * #inverse(long)} and {@code 3 * (n - 1)} multiplications, using <i>Montgomery's
+	 * trick</i>: with the prefix products {@code p[i] = values[0] * ... * values[i]},
+	 * {@code 1 / values[i] = p[i - 1] / p[i]}, and {@code 1 / p[i - 1] = values[i] /
+	 * p[i]}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If any of the {@code values} is not invertible.
+	 */
+	public long[] batchInverse(long[] values) {
+		int n = values.length;
+		long[] inverses = new long[n];
+		if (n == 0) return inverses;
+		inverses[0] = values[0];
+		for (int i = 1; i < n; ++i)
+			inverses[i] = this.multiply(inverses[i - 1], values[i]);
+		long inverse;
+		try {
+			inverse = this.inverse(inverses[n - 1]);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Not all invertible", e);
+		}
+		for (int i = n - 1; i > 0; --i) {
+			long next = this.multiply(inverse, values[i]);  // 1 / p[i - 1]
+			inverses[i] = this.multiply(inverse, inverses[i - 1]);
+			inverse = next;
+		}
+		inverses[0] = inverse;
+		return inverses;
+	}
+
+	/**
+	 * Set {@code result[i] = a[i] + b[i] mod m} for every index of {@code result} and
+	 * return it. {@code result} may be the same array as {@code a} or {@code b}.
+	 */
+	public long[] add(long[] a, long[] b, long[] result) {
+		long m = this.modulus;
+		if (this.kind == WRAPPING)
+			for (int i = 0; i < result.length; ++i) result[i] = a[i] + b[i];
+		else if (m <= 1L << 62)
+			for (int i = 0; i < result.length; ++i) {
+				long sum = a[i] + b[i] - m;
+				result[i] = sum + ((sum >> 63) & m);
+			}
+		else for (int i = 0; i < result.length; ++i) result[i] = this.add(a[i], b[i]);
+		return result;
+	}
+
+	/**
+	 * Set {@code result[i] = a[i] - b[i] mod m} for every index of {@code result} and
+	 * return it. {@code result} may be the same array as {@code a} or {@code b}.
+	 */
+	public long[] subtract(long[] a, long[] b, long[] result) {
+		long m = this.modulus;
+		if (this.kind == WRAPPING)
+			for (int i = 0; i < result.length; ++i) result[i] = a[i] - b[i];
+		else
+			for (int i = 0; i < result.length; ++i) {
+				long difference = a[i] - b[i];
+				result[i] = difference + ((difference >> 63) & m);
+			}
+		return result;
+	}
+
+	/**
+	 * Set {@code result[i] = a[i] * b[i] mod m} for every index of {@code result} and
+	 * return it. {@code result} may be the same array as {@code a} or {@code b}.
+	 */
+	public long[] multiply(long[] a, long[] b, long[] result) {
+		if (this.kind == WRAPPING)
+			for (int i = 0; i < result.length; ++i) result[i] = a[i] * b[i];
+		else if (this.kind == BARRETT)
+			for (int i = 0; i < result.length; ++i)
+				result[i] = this.barrettReduce(a[i] * b[i]);
+		else
+			for (int i = 0; i < result.length; ++i) result[i] = this.multiply(a[i], b[i]);
+		return result;
+	}
+
+	/**
+	 * Set {@code result[i] = a[i] * c mod m} for every index of {@code result} and
+	 * return it. {@code result} may be the same array as {@code a}.
+	 */
+	public long[] multiply(long[] a, long c, long[] result) {
+		if (this.kind == WRAPPING)
+			for (int i = 0; i < result.length; ++i) result[i] = a[i] * c;
+		else if (this.kind == BARRETT)
+			for (int i = 0; i < result.length; ++i)
+				result[i] = this.barrettReduce(a[i] * c);
+		else for (int i = 0; i < result.length; ++i) result[i] = this.multiply(a[i], c);
+		return result;
+	}
+
+	/**
+	 * Return the sum of all the {@code values} modulo {@code m}.
+	 */
+	public long sum(long[] values) {
+		long sum = 0;
+		for (long value : values) sum = this.add(sum, value);
+		return sum;
+	}
+}
@@ -0,0 +1,108 @@
+package io.github.std4453.projecteuler.utils;
+
+import static io.github.std4453.projecteuler.utils.MathsHelper.unsignedMultiplyHigh;
+
+/**
+ * {@code Montgomery} performs modular arithmetic for a fixed odd modulus {@code n <
+ * 2^63} using <a href="https://en.wikipedia.org/wiki/Montgomery_modular_multiplication"><i>Montgomery
+ * reduction</i></a> with {@code R = 2^64}.<br />
+ * A product of two residues is reduced with two multiplications and one
+ * {@link MathsHelper#unsignedMultiplyHigh(long, long)} instead of a 128-bit division,
+ * so that {@code a * b mod n} never overflows and never goes through
+ * {@link java.math.BigInteger}.<br />
+ * Values passed to {@link #mult(long, long)} and {@link #pow(long, long)} must be in
+ * <i>Montgomery form</i>, that is, converted by {@link #toMontgomery(long)} first and
+ * converted back by {@link #fromMontgomery(long)} at last.
+ */
+public class Montgomery {
+	private final long n;
+	private final long nInverse;  // n^-1 mod 2^64
+	private final long r2;  // R^2 mod n
+
+	/**
+	 * @throws IllegalArgumentException
+	 * 		If {@code n} is not odd or {@code n <= 1}.
+	 */
+	public Montgomery(long n) {
+		if (n <= 1 || (n & 1) == 0)
+			throw new IllegalArgumentException("Modulus must be odd and > 1: " + n);
+		this.n = n;
+
+		// Newton's iteration, every step doubles the number of correct bits
+		long inverse = n;  // correct for the lowest 3 bits since n * n = 1 (mod 8)
+		for (int i = 0; i < 5; ++i) inverse *= 2 - n * inverse;
+		this.nInverse = inverse;
+
+		long r = Long.remainderUnsigned(-n, n);  // 2^64 - n = R (mod n)
+		for (int i = 0; i < 64; ++i) r = this.add(r, r);
+		this.r2 = r;
+	}
+
+	public long getModulus() {
+		return this.n;
+	}
+
+	/**
+	 * Calculate {@code a * b * R^-1 mod n}, where {@code a} and {@code b} must be in
+	 * {@code [0, n)}.
+	 */
+	public long mult(long a, long b) {
+		long low = a * b;
+		long high = unsignedMultiplyHigh(a, b);
+		long q = low * this.nInverse;  // so that a * b - q * n = 0 (mod 2^64)
+		long result = high - unsignedMultiplyHigh(q, this.n);
+		return result < 0 ? result + this.n : result;
+	}
+
+	/**
+	 * Calculate {@code a + b mod n}, where {@code a} and {@code b} must be in {@code
+	 * [0, n)}. Montgomery form is preserved by addition.
+	 */
+	public long add(long a, long b) {
+		// a + b might exceed 2^63 - 1, therefore compare before adding
+		return a >= this.n - b ? a - (this.n - b) : a + b;
+	}
+
+	/**
+	 * Calculate {@code a - b mod n}, where {@code a} and {@code b} must be in {@code
+	 * [0, n)}. Montgomery form is preserved by subtraction.
+	 */
+	public long subtract(long a, long b) {
+		return a >= b ? a - b : a - b + this.n;
+	}
+
+	/**
+	 * Calculate {@code base^expo} in Montgomery form, using binary exponentiation.
+	 */
+	public long pow(long base, long expo) {
+		long result = this.one();
+		for (; expo > 0; expo >>= 1) {
+			if ((expo & 1) != 0) result = this.mult(result, base);
+			base = this.mult(base, base);
+		}
+		return result;
+	}
+
+	/**
+	 * Return {@code 1} in Montgomery form, that is, {@code R mod n}.
+	 */
+	public long one() {
+		return this.mult(1, this.r2);
+	}
+
+	/**
+	 * Convert any {@code long a} into Montgomery form.
+	 */
+	public long toMontgomery(long a) {
+		a %= this.n;
+		if (a < 0) a += this.n;
+		return this.mult(a, this.r2);
+	}
+
+	/**
+	 * Convert {@code a} back from Montgomery form.
+	 */
+	public long fromMontgomery(long a) {
+		return this.mult(a, 1);
+	}
+}
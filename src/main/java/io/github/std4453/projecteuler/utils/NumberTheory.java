@@ -1,10 +1,11 @@
 package io.github.std4453.projecteuler.utils;
 
-import java.util.Map;
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.PrimitiveIterator;
-import java.util.TreeMap;
 import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
 
@@ -59,11 +60,278 @@ public class NumberTheory {
 		return asStream(new LongDivisorIterator(factorized));
 	}
 
+	/**
+	 * Return a {@link IntStream} representing all the divisors of the given
+	 * {@link IntFactorized} in ascending order.
+	 *
+	 * @see #intDivisorsBetween(IntFactorized, int, int)
+	 */
+	public static IntStream sortedIntDivisorStream(IntFactorized factorized) {
+		return asStream(new SortedDivisorIterator(factorized, 1, Integer.MAX_VALUE))
+				.mapToInt(d -> (int) d);
+	}
+
+	/**
+	 * Return a {@link IntStream} representing the divisors of the given
+	 * {@link IntFactorized} in {@code [lo, hi)}, in ascending order.<br />
+	 * The divisors are produced lazily, and those out of range are never generated.
+	 *
+	 * @see SortedDivisorIterator
+	 */
+	public static IntStream intDivisorsBetween(IntFactorized factorized, int lo, int hi) {
+		return asStream(new SortedDivisorIterator(factorized, lo, hi - 1L))
+				.mapToInt(d -> (int) d);
+	}
+
+	/**
+	 * {@code long} version of {@link #sortedIntDivisorStream(IntFactorized)}.
+	 */
+	public static LongStream sortedLongDivisorStream(LongFactorized factorized) {
+		return asStream(new SortedDivisorIterator(factorized.getBases(),
+				factorized.getExponents(), 1, Long.MAX_VALUE));
+	}
+
+	/**
+	 * {@code long} version of {@link #intDivisorsBetween(IntFactorized, int, int)}.
+	 */
+	public static LongStream longDivisorsBetween(LongFactorized factorized, long lo,
+												 long hi) {
+		if (hi <= lo) return LongStream.empty();
+		return asStream(new SortedDivisorIterator(factorized.getBases(),
+				factorized.getExponents(), lo, hi - 1));
+	}
+
+	/**
+	 * Iterates over the divisors in {@code [lo, max]} in ascending order, using a
+	 * <i>meet-in-the-middle</i> split.<br />
+	 * The prime factors are divided into two groups with about the same number of
+	 * divisors each, which are generated and sorted as {@code left} and {@code right},
+	 * so that every divisor is {@code left[i] * right[j]} in exactly one way. For
+	 * every {@code i}, the products {@code left[i] * right[j]} are ascending in {@code
+	 * j}, so these {@code |left|} sorted sequences are merged with a heap, each one
+	 * starting from the first {@code j} with {@code left[i] * right[j] >= lo}, found
+	 * by binary search.<br />
+	 * For a number with {@code D} divisors, setting up takes {@code O(sqrt(D) *
+	 * log(D))} time and each divisor produced takes {@code O(log(D))}, no matter how
+	 * many divisors lie outside of the range.
+	 */
+	static class SortedDivisorIterator implements PrimitiveIterator.OfLong {
+		private final long max;
+		private final long[] left;
+		private final long[] right;
+		private final int[] heap;  // indices into left, ordered by values
+		private final int[] position;  // current index into right, for every left[i]
+		private final long[] values;  // left[i] * right[position[i]]
+		private int heapSize;
+
+		SortedDivisorIterator(IntFactorized factorized, long lo, long max) {
+			this(Arrays.stream(factorized.getBases()).asLongStream().toArray(),
+					factorized.getExponents(), lo, max);
+		}
+
+		SortedDivisorIterator(long[] bases, int[] exponents, long lo, long max) {
+			this.max = max;
+			// assign the factors with most divisors first to the smaller group
+			Integer[] order = new Integer[bases.length];
+			for (int i = 0; i < order.length; ++i) order[i] = i;
+			Arrays.sort(order, (a, b) -> exponents[b] - exponents[a]);
+			long leftCount = 1, rightCount = 1;
+			LongArrayList leftBases = new LongArrayList(), rightBases = new LongArrayList();
+			IntArrayList leftExpos = new IntArrayList(), rightExpos = new IntArrayList();
+			for (int i : order)
+				if (leftCount <= rightCount) {
+					leftBases.add(bases[i]);
+					leftExpos.add(exponents[i]);
+					leftCount *= exponents[i] + 1;
+				} else {
+					rightBases.add(bases[i]);
+					rightExpos.add(exponents[i]);
+					rightCount *= exponents[i] + 1;
+				}
+			this.left = sortedDivisors(leftBases, leftExpos, (int) leftCount);
+			this.right = sortedDivisors(rightBases, rightExpos, (int) rightCount);
+
+			this.heap = new int[this.left.length];
+			this.position = new int[this.left.length];
+			this.values = new long[this.left.length];
+			for (int i = 0; i < this.left.length; ++i) {
+				long a = this.left[i], min = Math.max(lo, 1);
+				long key = min / a + (min % a == 0 ? 0 : 1);  // a * right[j] >= lo
+				int j = Arrays.binarySearch(this.right, key);
+				if (j < 0) j = -j - 1;
+				if (j == this.right.length || a * this.right[j] > max) continue;
+				this.position[i] = j;
+				this.values[i] = a * this.right[j];
+				this.heap[this.heapSize++] = i;
+			}
+			for (int i = (this.heapSize >>> 1) - 1; i >= 0; --i) this.siftDown(i);
+		}
+
+		private static long[] sortedDivisors(LongArrayList bases, IntArrayList exponents,
+											 int count) {
+			long[] divisors = new long[count];
+			divisors[0] = 1;
+			int size = 1;
+			for (int i = 0; i < bases.size(); ++i) {
+				long p = bases.getLong(i);
+				int block = size;
+				for (int e = exponents.getInt(i), from = 0; e > 0; --e, from += block)
+					for (int j = from; j < from + block; ++j)
+						divisors[size++] = divisors[j] * p;
+			}
+			Arrays.sort(divisors);
+			return divisors;
+		}
+
+		private void siftDown(int index) {
+			int[] heap = this.heap;  // shortcut
+			int top = heap[index];
+			long value = this.values[top];
+			while (true) {
+				int child = (index << 1) + 1;
+				if (child >= this.heapSize) break;
+				if (child + 1 < this.heapSize &&
+						this.values[heap[child + 1]] < this.values[heap[child]]) ++child;
+				if (this.values[heap[child]] >= value) break;
+				heap[index] = heap[child];
+				index = child;
+			}
+			heap[index] = top;
+		}
+
+		@Override
+		public long nextLong() {
+			if (!this.hasNext()) throw new NoSuchElementException();
+			int top = this.heap[0];
+			long divisor = this.values[top];
+			int j = ++this.position[top];
+			if (j < this.right.length && (this.values[top] = this.left[top] *
+					this.right[j]) <= this.max) this.siftDown(0);  // advance the sequence
+			else {  // sequence exhausted, replace it by the last one
+				this.heap[0] = this.heap[--this.heapSize];
+				if (this.heapSize > 0) this.siftDown(0);
+			}
+			return divisor;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.heapSize > 0;
+		}
+	}
+
+	/**
+	 * Invoke {@code action} on every divisor of the given {@code int n}, in no
+	 * particular order.
+	 *
+	 * @see #forEachIntDivisor(IntFactorized, IntConsumer)
+	 */
+	public static void forEachIntDivisor(int n, IntConsumer action) {
+		forEachIntDivisor(new IntFactorized(n), action);
+	}
+
+	/**
+	 * Invoke {@code action} on every divisor of the given {@link IntFactorized}, in no
+	 * particular order.<br />
+	 * This is the fast path of {@link #intDivisorStream(IntFactorized)}: every divisor
+	 * costs a single multiplication and nothing is allocated.
+	 */
+	public static void forEachIntDivisor(IntFactorized factorized, IntConsumer action) {
+		forEachIntDivisor(factorized, factorized.size() - 1, 1, action);
+	}
+
+	private static void forEachIntDivisor(IntFactorized factorized, int index,
+										  int product, IntConsumer action) {
+		if (index < 0) {
+			action.accept(product);
+			return;
+		}
+		int p = factorized.getBase(index);
+		for (int e = factorized.getExponent(index); ; product *= p) {
+			forEachIntDivisor(factorized, index - 1, product, action);
+			if (e-- == 0) break;
+		}
+	}
+
+	/**
+	 * Return all the divisors of the given {@link IntFactorized} as an {@code int[]}, in
+	 * no particular order.<br />
+	 * The array is built in one pass: starting from {@code {1}}, for every prime power
+	 * {@code p^e} the divisors found so far are multiplied by {@code p, p^2, ..., p^e}
+	 * and appended.
+	 */
+	public static int[] intDivisors(IntFactorized factorized) {
+		int[] divisors = new int[factorized.getNumberOfDivisors()];
+		divisors[0] = 1;
+		int count = 1;
+		for (int i = 0; i < factorized.size(); ++i) {
+			int p = factorized.getBase(i), block = count;
+			for (int e = factorized.getExponent(i), from = 0; e > 0; --e, from += block)
+				for (int j = from; j < from + block; ++j)
+					divisors[count++] = divisors[j] * p;
+		}
+		return divisors;
+	}
+
+	/**
+	 * {@code long} version of {@link #forEachIntDivisor(int, IntConsumer)}.
+	 */
+	public static void forEachLongDivisor(long n, LongConsumer action) {
+		forEachLongDivisor(new LongFactorized(n), action);
+	}
+
+	/**
+	 * {@code long} version of {@link #forEachIntDivisor(IntFactorized, IntConsumer)}.
+	 */
+	public static void forEachLongDivisor(LongFactorized factorized, LongConsumer action) {
+		forEachLongDivisor(factorized, factorized.size() - 1, 1, action);
+	}
+
+	private static void forEachLongDivisor(LongFactorized factorized, int index,
+										   long product, LongConsumer action) {
+		if (index < 0) {
+			action.accept(product);
+			return;
+		}
+		long p = factorized.getBase(index);
+		for (int e = factorized.getExponent(index); ; product *= p) {
+			forEachLongDivisor(factorized, index - 1, product, action);
+			if (e-- == 0) break;
+		}
+	}
+
+	/**
+	 * {@code long} version of {@link #intDivisors(IntFactorized)}.
+	 */
+	public static long[] longDivisors(LongFactorized factorized) {
+		long[] divisors = new long[(int) factorized.getNumberOfDivisors()];
+		divisors[0] = 1;
+		int count = 1;
+		for (int i = 0; i < factorized.size(); ++i) {
+			long p = factorized.getBase(i);
+			int block = count;
+			for (int e = factorized.getExponent(i), from = 0; e > 0; --e, from += block)
+				for (int j = from; j < from + block; ++j)
+					divisors[count++] = divisors[j] * p;
+		}
+		return divisors;
+	}
+
+	/**
+	 * Iterates over all the divisors like an odometer: the exponent of the first prime
+	 * factor is increased until it reaches its maximum, then it is reset to 0 and the
+	 * next exponent is increased, and so on.<br />
+	 * {@code partial[i]} caches the product of the current prime powers from the
+	 * {@code i}-th factor on, so that each step costs amortized {@code O(1)}
+	 * multiplications.
+	 */
 	static class IntDivisorIterator implements PrimitiveIterator.OfInt {
 		private int size;
 		private int[] max;
 		private int[] bases;
 		private int[] exponents;
+		private int[] partial;  // partial[size] = 1
+		private int remaining;
 
 		IntDivisorIterator(int n) {
 			this(new IntFactorized(n));
@@ -74,44 +342,46 @@ public class NumberTheory {
 			this.max = new int[this.size];
 			this.bases = new int[this.size];
 			this.exponents = new int[this.size];
-			int index = 0;
-			for (Map.Entry<Integer, Integer> factor : factorized) {
-				this.bases[index] = factor.getKey();
-				this.max[index] = factor.getValue();
-				++index;
+			this.partial = new int[this.size + 1];
+			Arrays.fill(this.partial, 1);
+			for (int i = 0; i < this.size; ++i) {
+				this.bases[i] = factorized.getBase(i);
+				this.max[i] = factorized.getExponent(i);
 			}
+			this.remaining = factorized.getNumberOfDivisors();
 		}
 
 		@Override
 		public int nextInt() {
-			int first = this.firstNotMax();
-			if (first == -1) throw new NoSuchElementException();
-			++this.exponents[first];
-			for (int i = 0; i < first; ++i) this.exponents[i] = 0;
-
-			int product = 1;
-			for (int i = 0; i < this.size; ++i)
-				product *= MathsHelper.pow(this.bases[i], this.exponents[i]);
-			return product;
+			if (!this.hasNext()) throw new NoSuchElementException();
+			int divisor = this.partial[0];
+			if (--this.remaining > 0) {  // advance to the next divisor
+				int first = 0;
+				while (this.exponents[first] == this.max[first]) ++first;
+				++this.exponents[first];
+				int product = this.partial[first] * this.bases[first];
+				for (int i = first; i >= 0; --i) this.partial[i] = product;
+				for (int i = 0; i < first; ++i) this.exponents[i] = 0;
+			}
+			return divisor;
 		}
 
 		@Override
 		public boolean hasNext() {
-			return this.firstNotMax() != -1;
-		}
-
-		private int firstNotMax() {
-			for (int i = 0; i < this.size; ++i)
-				if (this.exponents[i] < this.max[i]) return i;
-			return -1;
+			return this.remaining > 0;
 		}
 	}
 
+	/**
+	 * {@code long} version of {@link IntDivisorIterator}.
+	 */
 	static class LongDivisorIterator implements PrimitiveIterator.OfLong {
 		private int size;
 		private int[] max;
 		private long[] bases;
 		private int[] exponents;
+		private long[] partial;  // partial[size] = 1
+		private long remaining;
 
 		LongDivisorIterator(long n) {
 			this(new LongFactorized(n));
@@ -122,36 +392,33 @@ public class NumberTheory {
 			this.max = new int[this.size];
 			this.bases = new long[this.size];
 			this.exponents = new int[this.size];
-			int index = 0;
-			for (Map.Entry<Long, Integer> factor : factorized) {
-				this.bases[index] = factor.getKey();
-				this.max[index] = factor.getValue();
-				++index;
+			this.partial = new long[this.size + 1];
+			Arrays.fill(this.partial, 1);
+			for (int i = 0; i < this.size; ++i) {
+				this.bases[i] = factorized.getBase(i);
+				this.max[i] = factorized.getExponent(i);
 			}
+			this.remaining = factorized.getNumberOfDivisors();
 		}
 
 		@Override
 		public long nextLong() {
-			int first = this.firstNotMax();
-			if (first == -1) throw new NoSuchElementException();
-			++this.exponents[first];
-			for (int i = 0; i < first; ++i) this.exponents[i] = 0;
-
-			long product = 1;
-			for (int i = 0; i < this.size; ++i)
-				product *= MathsHelper.pow(this.bases[i], this.exponents[i]);
-			return product;
+			if (!this.hasNext()) throw new NoSuchElementException();
+			long divisor = this.partial[0];
+			if (--this.remaining > 0) {  // advance to the next divisor
+				int first = 0;
+				while (this.exponents[first] == this.max[first]) ++first;
+				++this.exponents[first];
+				long product = this.partial[first] * this.bases[first];
+				for (int i = first; i >= 0; --i) this.partial[i] = product;
+				for (int i = 0; i < first; ++i) this.exponents[i] = 0;
+			}
+			return divisor;
 		}
 
 		@Override
 		public boolean hasNext() {
-			return this.firstNotMax() != -1;
-		}
-
-		private int firstNotMax() {
-			for (int i = 0; i < this.size; ++i)
-				if (this.exponents[i] < this.max[i]) return i;
-			return -1;
+			return this.remaining > 0;
 		}
 	}
 
@@ -160,25 +427,16 @@ public class NumberTheory {
 	 * {@link IntFactorized}.<br />
 	 * This is faster than {@code IntStream.rangeClosed(1, maxInclusive).map
 	 * (IntFactorized::new)} and should be taken into account under similar
-	 * circumstances.<br />
+	 * circumstances. When the {@link IntFactorized} instances themselves are not
+	 * needed, use {@link FactorTable} directly, which takes far less memory.<br />
 	 * Note that the returned array of {@link IntFactorized} has length of {@code
 	 * maxInclusive + 1} and the element at index 0 is {@code null}. To get the
 	 * {@link IntFactorized} instance of integer {@code i}, use {@code factorized[i]}.
 	 */
-	@SuppressWarnings("unchecked")
 	public static IntFactorized[] intFactorizeRange(int maxInclusive) {
-		Map<Integer, Integer>[] factorsMap = new Map[maxInclusive + 1];
-		for (int i = 1; i <= maxInclusive; ++i) factorsMap[i] = new TreeMap<>();
-
-		IntArrayList primes = Primes.sievePrimesInt(maxInclusive + 1);
-		primes.forEach((IntConsumer) p -> {
-			for (int i = p, j = 1; i <= maxInclusive; i += p, ++j)
-				factorsMap[i].put(p, factorsMap[j].getOrDefault(p, 0) + 1);
-		});
-
+		FactorTable table = new FactorTable(maxInclusive);
 		IntFactorized[] factorized = new IntFactorized[maxInclusive + 1];
-		for (int i = 1; i <= maxInclusive; ++i)
-			factorized[i] = new IntFactorized(factorsMap[i]);
+		for (int i = 1; i <= maxInclusive; ++i) factorized[i] = table.get(i);
 		return factorized;
 	}
 
@@ -191,20 +449,482 @@ public class NumberTheory {
 	 * time) converting the return value of {@link #intFactorizeRange(int)} from {@link
 	 * IntFactorized} to {@link LongFactorized}.
 	 */
-	@SuppressWarnings("unchecked")
 	public static LongFactorized[] longFactorizeRange(int maxInclusive) {
-		Map<Long, Integer>[] factorsMap = new Map[maxInclusive + 1];
-		for (int i = 1; i <= maxInclusive; ++i) factorsMap[i] = new TreeMap<>();
-
-		IntArrayList primes = Primes.sievePrimesInt(maxInclusive + 1);
-		primes.forEach((IntConsumer) p -> {
-			for (int i = p, j = 1; i <= maxInclusive; i += p, ++j)
-				factorsMap[i].put((long) p, factorsMap[j].getOrDefault(p, 0) + 1);
-		});
-
+		FactorTable table = new FactorTable(maxInclusive);
 		LongFactorized[] factorized = new LongFactorized[maxInclusive + 1];
-		for (int i = 1; i <= maxInclusive; ++i)
-			factorized[i] = new LongFactorized(factorsMap[i]);
+		table.forEach((n, primes, exponents, from, to) -> {
+			long[] bases = new long[to - from];
+			int[] expos = new int[to - from];
+			for (int i = from; i < to; ++i) {
+				bases[i - from] = primes[i];
+				expos[i - from] = exponents[i];
+			}
+			factorized[n] = new LongFactorized(bases, expos, to - from);
+		});
 		return factorized;
 	}
+
+	/**
+	 * {@code PrimePowerFunction} defines a multiplicative function {@code f} by its
+	 * values on prime powers, for {@link #multiplicative(int, PrimePowerFunction,
+	 * long)}.
+	 */
+	@FunctionalInterface
+	public interface PrimePowerFunction {
+		/**
+		 * Return {@code f(p^e)}, where {@code power = p^e}.
+		 */
+		long apply(int p, int e, int power);
+	}
+
+	/**
+	 * Calculate {@code f(n)} for every {@code n} in {@code [1, max]} with a <i>linear
+	 * sieve</i> and return them as an array of length {@code max + 1}, where the
+	 * element at index 0 is {@code 0}.
+	 *
+	 * @see #multiplicative(int, PrimePowerFunction, long)
+	 */
+	public static long[] multiplicative(int max, PrimePowerFunction f) {
+		return multiplicative(max, f, 0);
+	}
+
+	/**
+	 * Calculate {@code f(n) mod modulus} for every {@code n} in {@code [1, max]} with a
+	 * <i>linear sieve</i> in {@code O(max)} time, where {@code f} is the multiplicative
+	 * function defined by its values on prime powers. The values are returned as an
+	 * array of length {@code max + 1}, where the element at index 0 is {@code 0}.<br />
+	 * Every composite {@code n} is reached exactly once as {@code i * p}, where {@code
+	 * p} is its smallest prime factor. Keeping track of the largest power of the
+	 * smallest prime factor dividing each {@code n}, {@code f(n)} is simply {@code
+	 * f(n / p^e) * f(p^e)}, and {@code f} itself is invoked only once for each prime
+	 * power.
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for plain {@code long} multiplication, which is exact as
+	 * 		long as the values fit in a {@code long} (and modulo {@code 2^64} otherwise).
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code max < 1}, {@code max == Integer.MAX_VALUE} or {@code modulus < 0}.
+	 */
+	public static long[] multiplicative(int max, PrimePowerFunction f, long modulus) {
+		checkMax(max);
+		ModArith arith = new ModArith(modulus);
+		long[] values = new long[max + 1];
+		int[] lowPower = new int[max + 1];  // p^e, p being the smallest prime factor
+		byte[] lowExpo = new byte[max + 1];  // e
+		int[] primes = new int[(int) SegmentedSieve.estimateCount(max + 1L)];
+		int count = 0;
+		values[1] = arith.reduce(1);
+		for (int i = 2; i <= max; ++i) {
+			if (lowPower[i] == 0) {  // prime
+				primes[count++] = lowPower[i] = i;
+				lowExpo[i] = 1;
+				values[i] = arith.reduce(f.apply(i, 1, i));
+			}
+			for (int k = 0, limit = max / i; k < count; ++k) {
+				int p = primes[k];
+				if (p > limit) break;
+				int n = i * p;
+				if (i % p == 0) {  // p is the smallest prime factor of i
+					int power = lowPower[n] = lowPower[i] * p;
+					int expo = lowExpo[n] = (byte) (lowExpo[i] + 1);
+					int rest = i / lowPower[i];
+					values[n] = rest == 1 ? arith.reduce(f.apply(p, expo, power)) :
+							arith.multiply(values[rest], values[power]);
+					break;
+				}
+				lowPower[n] = p;
+				lowExpo[n] = 1;
+				values[n] = arith.multiply(values[i], values[p]);
+			}
+		}
+		return values;
+	}
+
+	private static void checkMax(int max) {
+		if (max < 1 || max == Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Illegal max: " + max);
+	}
+
+	/**
+	 * Return <i>Euler's totient function</i> {@code phi(n)} for every {@code n} in
+	 * {@code [1, max]}, calculated by a linear sieve in {@code O(max)} time.<br />
+	 * Note that the returned array has length of {@code max + 1} and the element at
+	 * index 0 is {@code 0}.
+	 */
+	public static int[] totients(int max) {
+		checkMax(max);
+		int[] phi = new int[max + 1];
+		int[] primes = new int[(int) SegmentedSieve.estimateCount(max + 1L)];
+		int count = 0;
+		phi[1] = 1;
+		for (int i = 2; i <= max; ++i) {
+			if (phi[i] == 0) phi[primes[count++] = i] = i - 1;
+			for (int k = 0, limit = max / i; k < count; ++k) {
+				int p = primes[k];
+				if (p > limit) break;
+				if (i % p == 0) {  // phi(i * p) = phi(i) * p if p divides i
+					phi[i * p] = phi[i] * p;
+					break;
+				}
+				phi[i * p] = phi[i] * (p - 1);
+			}
+		}
+		return phi;
+	}
+
+	/**
+	 * Return the <i>Moebius function</i> {@code mu(n)} for every {@code n} in {@code
+	 * [1, max]}, calculated by a linear sieve in {@code O(max)} time.<br />
+	 * Note that the returned array has length of {@code max + 1} and the element at
+	 * index 0 is {@code 0}.
+	 */
+	public static byte[] mobius(int max) {
+		checkMax(max);
+		byte[] mu = new byte[max + 1];
+		boolean[] composite = new boolean[max + 1];
+		int[] primes = new int[(int) SegmentedSieve.estimateCount(max + 1L)];
+		int count = 0;
+		mu[1] = 1;
+		for (int i = 2; i <= max; ++i) {
+			if (!composite[i]) {
+				primes[count++] = i;
+				mu[i] = -1;
+			}
+			for (int k = 0, limit = max / i; k < count; ++k) {
+				int p = primes[k];
+				if (p > limit) break;
+				composite[i * p] = true;
+				if (i % p == 0) break;  // mu(i * p) = 0, as p^2 divides it
+				mu[i * p] = (byte) -mu[i];
+			}
+		}
+		return mu;
+	}
+
+	/**
+	 * Return the number of divisors {@code d(n)} for every {@code n} in {@code [1,
+	 * max]}, calculated by a linear sieve in {@code O(max)} time.<br />
+	 * Note that the returned array has length of {@code max + 1} and the element at
+	 * index 0 is {@code 0}.
+	 */
+	public static int[] divisorCounts(int max) {
+		checkMax(max);
+		int[] d = new int[max + 1];
+		byte[] lowExpo = new byte[max + 1];  // exponent of the smallest prime factor
+		int[] primes = new int[(int) SegmentedSieve.estimateCount(max + 1L)];
+		int count = 0;
+		d[1] = 1;
+		for (int i = 2; i <= max; ++i) {
+			if (d[i] == 0) {
+				primes[count++] = i;
+				d[i] = 2;
+				lowExpo[i] = 1;
+			}
+			for (int k = 0, limit = max / i; k < count; ++k) {
+				int p = primes[k];
+				if (p > limit) break;
+				int n = i * p;
+				if (i % p == 0) {  // the factor e + 1 of d(i) becomes e + 2
+					int expo = lowExpo[i];
+					d[n] = d[i] / (expo + 1) * (expo + 2);
+					lowExpo[n] = (byte) (expo + 1);
+					break;
+				}
+				d[n] = d[i] << 1;
+				lowExpo[n] = 1;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Return the sum of divisors {@code sigma(n)} for every {@code n} in {@code [1,
+	 * max]}, calculated by a linear sieve in {@code O(max)} time.<br />
+	 * Note that the returned array has length of {@code max + 1} and the element at
+	 * index 0 is {@code 0}.
+	 *
+	 * @see #multiplicative(int, PrimePowerFunction, long)
+	 */
+	public static long[] divisorSums(int max) {
+		// sigma(p^e) = 1 + p + ... + p^e = (p^(e + 1) - 1) / (p - 1)
+		return multiplicative(max, (p, e, power) -> ((long) power * p - 1) / (p - 1));
+	}
+
+	/**
+	 * Return {@code sigma_k(n) mod modulus}, the sum of the {@code k}-th powers of the
+	 * divisors, for every {@code n} in {@code [1, max]}, calculated by a linear sieve in
+	 * {@code O(max)} time.<br />
+	 * Note that the returned array has length of {@code max + 1} and the element at
+	 * index 0 is {@code 0}.
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @see #multiplicative(int, PrimePowerFunction, long)
+	 */
+	public static long[] divisorSums(int max, int k, long modulus) {
+		if (k < 0) throw new IllegalArgumentException("Illegal k: " + k);
+		ModArith arith = new ModArith(modulus);
+		return multiplicative(max, (p, e, power) -> {
+			// 1 + p^k + p^2k + ... + p^ek
+			long pk = arith.pow(arith.reduce(p), k);
+			long sum = arith.reduce(1), term = sum;
+			for (int i = 1; i <= e; ++i) {
+				term = arith.multiply(term, pk);
+				sum = arith.add(sum, term);
+			}
+			return sum;
+		}, modulus);
+	}
+
+	/**
+	 * Return the <i>radical</i> {@code rad(n)}, the product of the distinct prime
+	 * factors, for every {@code n} in {@code [1, max]}, calculated by a linear sieve in
+	 * {@code O(max)} time.<br />
+	 * Note that the returned array has length of {@code max + 1} and the element at
+	 * index 0 is {@code 0}.
+	 */
+	public static int[] radicals(int max) {
+		checkMax(max);
+		int[] rad = new int[max + 1];
+		int[] primes = new int[(int) SegmentedSieve.estimateCount(max + 1L)];
+		int count = 0;
+		rad[1] = 1;
+		for (int i = 2; i <= max; ++i) {
+			if (rad[i] == 0) rad[primes[count++] = i] = i;
+			for (int k = 0, limit = max / i; k < count; ++k) {
+				int p = primes[k];
+				if (p > limit) break;
+				if (i % p == 0) {  // p is already in rad(i)
+					rad[i * p] = rad[i];
+					break;
+				}
+				rad[i * p] = rad[i] * p;
+			}
+		}
+		return rad;
+	}
+
+	/**
+	 * Return the exact value of {@code D(n) = d(1) + d(2) + ... + d(n)}, where {@code
+	 * d(k)} is the number of divisors of {@code k}.
+	 *
+	 * @see #summatoryDivisorCount(long, long)
+	 */
+	public static BigInteger summatoryDivisorCount(long n) {
+		return MathsHelper.fromResidues(summatoryDivisorCount(n, 0),
+				summatoryDivisorCount(n, MathsHelper.MERSENNE_61));
+	}
+
+	/**
+	 * Return {@code D(n) = d(1) + d(2) + ... + d(n)} modulo {@code modulus} in {@code
+	 * O(sqrt(n))} time, where {@code d(k)} is the number of divisors of {@code k}.<br />
+	 * {@code D(n)} counts the pairs {@code (a, b)} with {@code a * b <= n}. By the
+	 * <i>Dirichlet hyperbola method</i>, those with {@code a <= s = floor(sqrt(n))} or
+	 * {@code b <= s} are counted separately, and the {@code s^2} pairs with both
+	 * counted twice are subtracted:<br />
+	 * {@code D(n) = 2 * sum(floor(n / i), i = 1..s) - s^2}
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0} or {@code modulus < 0}.
+	 */
+	public static long summatoryDivisorCount(long n, long modulus) {
+		checkSummatory(n, modulus);
+		ModArith arith = new ModArith(modulus);
+		long s = MathsHelper.isqrt(n), sum = 0;
+		for (long i = 1; i <= s; ++i) sum = arith.add(sum, arith.reduce(n / i));
+		long square = arith.multiply(arith.reduce(s), arith.reduce(s));
+		return arith.subtract(arith.add(sum, sum), square);
+	}
+
+	/**
+	 * Return the exact value of {@code S(n) = sigma(1) + sigma(2) + ... + sigma(n)},
+	 * where {@code sigma(k)} is the sum of divisors of {@code k}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0} or {@code n > 2^62}, in which case {@code S(n)} might
+	 * 		exceed the range of {@link MathsHelper#fromResidues(long, long)}.
+	 *
+	 * @see #summatoryDivisorSum(long, long)
+	 */
+	public static BigInteger summatoryDivisorSum(long n) {
+		if (n > 1L << 62) throw new IllegalArgumentException("Sum might be too large: " + n);
+		return MathsHelper.fromResidues(summatoryDivisorSum(n, 0),
+				summatoryDivisorSum(n, MathsHelper.MERSENNE_61));
+	}
+
+	/**
+	 * Return {@code S(n) = sigma(1) + sigma(2) + ... + sigma(n)} modulo {@code modulus}
+	 * in {@code O(sqrt(n))} time, where {@code sigma(k)} is the sum of divisors of
+	 * {@code k}.<br />
+	 * {@code S(n)} is the sum of {@code a} over all pairs {@code (a, b)} with {@code a *
+	 * b <= n}, which by the <i>Dirichlet hyperbola method</i> with {@code s =
+	 * floor(sqrt(n))} and {@code T(x) = x * (x + 1) / 2} is:<br />
+	 * {@code S(n) = sum(i * floor(n / i) + T(floor(n / i)), i = 1..s) - s * T(s)}
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0} or {@code modulus < 0}.
+	 */
+	public static long summatoryDivisorSum(long n, long modulus) {
+		checkSummatory(n, modulus);
+		ModArith arith = new ModArith(modulus);
+		long s = MathsHelper.isqrt(n), sum = 0;
+		for (long i = 1; i <= s; ++i) {
+			long q = n / i;
+			sum = arith.add(sum, arith.multiply(arith.reduce(i), arith.reduce(q)));
+			sum = arith.add(sum, arith.triangle(q));
+		}
+		return arith.subtract(sum, arith.multiply(arith.reduce(s), arith.triangle(s)));
+	}
+
+	private static void checkSummatory(long n, long modulus) {
+		if (n < 0) throw new IllegalArgumentException("Illegal n: " + n);
+		if (modulus < 0) throw new IllegalArgumentException("Illegal modulus: " + modulus);
+	}
+
+	/**
+	 * Return the <i>Mertens function</i> {@code M(n) = mu(1) + mu(2) + ... + mu(n)} in
+	 * {@code O(n^(2/3))} time.<br />
+	 * To calculate {@code M(x)} for many {@code x}, use a single {@link Mertens}
+	 * instead, which keeps the sieve and the memoized values.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0}.
+	 */
+	public static long mertens(long n) {
+		if (n < 0) throw new IllegalArgumentException("Illegal n: " + n);
+		return n == 0 ? 0 : new Mertens(n).get(n);
+	}
+
+	/**
+	 * Return the exact value of {@code Phi(n) = phi(1) + phi(2) + ... + phi(n)}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0} or {@code n > 2^62}, in which case {@code Phi(n)} might
+	 * 		exceed the range of {@link MathsHelper#fromResidues(long, long)}.
+	 *
+	 * @see #totientSum(long, long)
+	 */
+	public static BigInteger totientSum(long n) {
+		if (n > 1L << 62) throw new IllegalArgumentException("Sum might be too large: " + n);
+		return MathsHelper.fromResidues(totientSum(n, 0),
+				totientSum(n, MathsHelper.MERSENNE_61));
+	}
+
+	/**
+	 * Return {@code Phi(n) = phi(1) + phi(2) + ... + phi(n)} modulo {@code modulus} in
+	 * {@code O(n^(2/3))} time.<br />
+	 * To calculate {@code Phi(x)} for many {@code x}, use a single {@link TotientSum}
+	 * instead, which keeps the sieve and the memoized values.
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0} or {@code modulus < 0}.
+	 */
+	public static long totientSum(long n, long modulus) {
+		checkSummatory(n, modulus);
+		return n == 0 ? 0 : new TotientSum(n, modulus).get(n);
+	}
+
+	/**
+	 * Return the length of the <i>Farey sequence</i> of order {@code n}, that is, the
+	 * number of reduced fractions in {@code [0, 1]} with denominators up to {@code n},
+	 * which is {@code 1 + Phi(n)}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 1} or {@code n > 2^62}.
+	 *
+	 * @see #totientSum(long)
+	 */
+	public static BigInteger fareyLength(long n) {
+		if (n < 1) throw new IllegalArgumentException("Illegal n: " + n);
+		return totientSum(n).add(BigInteger.ONE);
+	}
+
+	/**
+	 * Return the exact value of the binomial coefficient {@code C(n, k) = n! / (k! * (n
+	 * - k)!)}, which is 0 if {@code k < 0} or {@code k > n}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0}.
+	 *
+	 * @see #multinomialExact(int...)
+	 */
+	public static BigInteger binomialExact(int n, int k) {
+		if (n < 0) throw new IllegalArgumentException("Illegal n: " + n);
+		if (k < 0 || k > n) return BigInteger.ZERO;
+		return multinomialExact(k, n - k);
+	}
+
+	/**
+	 * Return the exact value of the <i>multinomial coefficient</i> {@code (k1 + ... +
+	 * km)! / (k1! * ... * km!)}.<br />
+	 * By <i>Legendre's formula</i>, the exponent of a prime {@code p} in {@code n!} is
+	 * {@code sum(floor(n / p^j), j >= 1)}, so that the exponent of every prime {@code p
+	 * <= n} in the result is known without any division. The primes are then packed
+	 * into {@code long} words as long as they fit, and the words are multiplied as
+	 * {@link BigInteger BigIntegers} in a balanced product tree, where the operands of
+	 * every multiplication have about the same size, so that the sub-quadratic
+	 * multiplication algorithms of {@link BigInteger} pay off, instead of multiplying
+	 * a huge product by one small factor at a time.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If any {@code ki < 0} or the sum exceeds {@code Integer.MAX_VALUE - 1}.
+	 */
+	public static BigInteger multinomialExact(int... ks) {
+		long sum = 0;
+		for (int k : ks) {
+			if (k < 0) throw new IllegalArgumentException("Illegal k: " + k);
+			sum += k;
+		}
+		if (sum >= Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too large: " + sum);
+		int n = (int) sum;
+
+		int[] oddPrimes = SegmentedSieve.basePrimes(n);
+		LongArrayList words = new LongArrayList();
+		long word = 1;
+		for (int i = -1; i < oddPrimes.length; ++i) {
+			int p = i < 0 ? 2 : oddPrimes[i];
+			if (p > n) break;
+			long expo = legendre(n, p);
+			for (int k : ks) expo -= legendre(k, p);
+			for (; expo > 0; --expo) {
+				if (word > Long.MAX_VALUE / p) {
+					words.add(word);
+					word = 1;
+				}
+				word *= p;
+			}
+		}
+		words.add(word);
+
+		BigInteger[] values = new BigInteger[words.size()];
+		for (int i = 0; i < values.length; ++i)
+			values[i] = BigInteger.valueOf(words.getLong(i));
+		return product(values, 0, values.length);
+	}
+
+	// exponent of p in n!
+	private static long legendre(int n, int p) {
+		long expo = 0;
+		for (int m = n / p; m > 0; m /= p) expo += m;
+		return expo;
+	}
+
+	// product of values[from, to), from < to
+	private static BigInteger product(BigInteger[] values, int from, int to) {
+		if (to - from == 1) return values[from];
+		int middle = (from + to) >>> 1;
+		return product(values, from, middle).multiply(product(values, middle, to));
+	}
 }
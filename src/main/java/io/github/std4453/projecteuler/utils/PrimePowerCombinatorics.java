@@ -0,0 +1,153 @@
+package io.github.std4453.projecteuler.utils;
+
+/**
+ * {@code PrimePowerCombinatorics} counts combinations modulo a prime power {@code q =
+ * p^e}, where the factorials cannot simply be inverted since most of them are
+ * divisible by {@code p}. Following <i>Granville</i>, {@code n!} is split into the
+ * power of {@code p} in it, which by <i>Legendre's formula</i> is {@code v(n) =
+ * sum(floor(n / p^j), j >= 1)}, and the product of the rest:<br />
+ * {@code n! / p^v(n) = prod(F(floor(n / p^j)), j >= 0)}<br />
+ * where {@code F(m)} is the product of the integers in {@code [1, m]} that are coprime
+ * to {@code p}, since the multiples of {@code p} in {@code [1, n]} are {@code p * [1,
+ * floor(n / p)]}. The products {@code F} are units modulo {@code q}, and since they
+ * repeat with period {@code q}, {@code F(m) = F(q)^floor(m / q) * F(m mod q)}, where
+ * {@code F(q) = +-1} by the generalized <i>Wilson's theorem</i>. Therefore:<br />
+ * {@code C(n, k) = p^(v(n) - v(k) - v(n - k)) * (n! / p^v(n)) / ((k! / p^v(k)) * ((n -
+ * k)! / p^v(n - k))) (mod q)}<br />
+ * which is 0 as soon as the power of {@code p} reaches {@code e}.<br />
+ * To save memory, {@code F} is only tabulated at the multiples of {@code p}, so that
+ * the table has {@code q / p + 1} entries and {@code F(r)} for {@code r < q} takes at
+ * most {@code p - 1} multiplications. A binomial therefore takes {@code O(p *
+ * log_p(n))} time, e.g. {@code p = 101, e = 4} needs a table of about {@code 10^6}
+ * entries.
+ */
+public class PrimePowerCombinatorics {
+	// keep the table within 8 * 2^27 bytes = 1GB
+	private static final long MAX_TABLE = 1 << 27;
+
+	private final long p;
+	private final int e;
+	private final long q;
+	private final ModArith arith;
+	private final long[] blockProducts;  // F(j * p) mod q
+	private final long period;  // F(q) mod q
+
+	/**
+	 * Build the table of {@code F} modulo {@code q = p^e}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code p} is not a prime, {@code e < 1}, {@code p^e} overflows or the
+	 * 		table would be too large, i.e. {@code p^(e - 1) > 2^27}.
+	 */
+	public PrimePowerCombinatorics(long p, int e) {
+		if (!Primes.isPrime(p)) throw new IllegalArgumentException("Illegal p: " + p);
+		if (e < 1) throw new IllegalArgumentException("Illegal e: " + e);
+		long blocks = 1;  // q / p
+		for (int i = 1; i < e; ++i) {
+			if (blocks > MAX_TABLE / p)
+				throw new IllegalArgumentException("Table too large: " + p + "^" + e);
+			blocks *= p;
+		}
+		if (blocks > Long.MAX_VALUE / p)
+			throw new IllegalArgumentException("Overflow: " + p + "^" + e);
+		this.p = p;
+		this.e = e;
+		this.q = blocks * p;
+		ModArith arith = this.arith = new ModArith(this.q);
+
+		long[] blockProducts = this.blockProducts = new long[(int) blocks + 1];
+		blockProducts[0] = arith.reduce(1);
+		for (int j = 1; j <= blocks; ++j) {
+			long product = blockProducts[j - 1];
+			for (long i = (j - 1) * p + 1, end = j * p; i < end; ++i)
+				product = arith.multiply(product, i);
+			blockProducts[j] = product;
+		}
+		this.period = blockProducts[(int) blocks];
+	}
+
+	public long getP() {
+		return this.p;
+	}
+
+	public int getE() {
+		return this.e;
+	}
+
+	/**
+	 * Return the modulus {@code q = p^e}.
+	 */
+	public long getModulus() {
+		return this.q;
+	}
+
+	// F(m) mod q
+	private long coprimeProduct(long m) {
+		long r = m % this.q;
+		long block = r / this.p;
+		long product = this.blockProducts[(int) block];
+		for (long i = block * this.p + 1; i <= r; ++i)
+			product = this.arith.multiply(product, i);
+		// F(q) is +-1, so its power only depends on the parity of the exponent
+		if (this.period != 1 && ((m / this.q) & 1) != 0)
+			product = this.arith.negate(product);
+		return product;
+	}
+
+	// n! / p^v(n) mod q
+	private long unitFactorial(long n) {
+		long result = this.arith.reduce(1);
+		for (; n > 0; n /= this.p)
+			result = this.arith.multiply(result, this.coprimeProduct(n));
+		return result;
+	}
+
+	/**
+	 * Return the exponent of {@code p} in {@code n!} by <i>Legendre's formula</i>.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0}.
+	 */
+	public long legendre(long n) {
+		if (n < 0) throw new IllegalArgumentException("Illegal n: " + n);
+		long v = 0;
+		for (n /= this.p; n > 0; n /= this.p) v += n;
+		return v;
+	}
+
+	/**
+	 * Return {@code C(n, k) mod p^e}, which is 0 if {@code k < 0} or {@code k > n}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0}.
+	 */
+	public long binomial(long n, long k) {
+		if (n < 0) throw new IllegalArgumentException("Illegal n: " + n);
+		if (k < 0 || k > n) return 0;
+		long v = this.legendre(n) - this.legendre(k) - this.legendre(n - k);
+		if (v >= this.e) return 0;
+		long denominator = this.arith.multiply(this.unitFactorial(k),
+				this.unitFactorial(n - k));
+		long result = this.arith.multiply(this.unitFactorial(n),
+				this.arith.inverse(denominator));
+		return this.arith.multiply(result, this.arith.pow(this.p % this.q, v));
+	}
+
+	/**
+	 * Return the <i>multinomial coefficient</i> {@code (k1 + ... + km)! / (k1! * ... *
+	 * km!) mod p^e}, as the product of {@code C(k1 + ... + ki, ki)} for {@code i =
+	 * 2..m}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If any {@code ki < 0}.
+	 */
+	public long multinomial(long... ks) {
+		long result = this.arith.reduce(1), sum = 0;
+		for (long k : ks) {
+			if (k < 0) throw new IllegalArgumentException("Illegal k: " + k);
+			sum += k;
+			result = this.arith.multiply(result, this.binomial(sum, k));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,292 @@
+package io.github.std4453.projecteuler.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+import static io.github.std4453.projecteuler.utils.StreamUtils.asStream;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * {@code PrimeTable} is a table of all the primes below a given limit stored in a
+ * file, so that the primes sieved by one JVM can be reused by all later ones without
+ * sieving again.<br />
+ * The file is memory-mapped through {@link FileChannel#map(FileChannel.MapMode, long,
+ * long)}, therefore opening an existing table costs almost nothing, the pages are
+ * loaded only when touched, and none of the memory belongs to the Java heap.<br />
+ * The file contains:
+ * <ul>
+ * <li>A header of {@value #HEADER_BYTES} bytes: magic number, limit, number of primes
+ * and checkpoint stride.</li>
+ * <li>A bitmap of all the odd numbers below the limit, one bit each, for {@code O(1)}
+ * {@link #isPrime(long)}.</li>
+ * <li>Every {@value #STRIDE}-th prime as a {@code long} checkpoint.</li>
+ * <li>The gaps between consecutive primes, divided by 2 so that each one fits into
+ * a byte, for {@link #get(long)} and sequential traversal.</li>
+ * </ul>
+ * For the maximum limit {@code 2^32} the file takes about 460MB.
+ */
+public class PrimeTable {
+	/**
+	 * Maximum limit of a {@link PrimeTable}. Every gap between primes below it is no
+	 * more than 336, so that half of it fits into an unsigned byte.
+	 */
+	public static final long MAX_LIMIT = 1L << 32;
+
+	/**
+	 * The file used by {@link #open(long)}, in the temporary directory.
+	 */
+	public static final Path DEFAULT_PATH = Paths.get(
+			System.getProperty("java.io.tmpdir"), "projecteuler-primes.bin");
+
+	private static final long MAGIC = 0x5052494d45544231L;  // "PRIMETB1"
+	private static final int HEADER_BYTES = 32;
+	private static final int STRIDE = 1 << 12;
+
+	private final long limit;
+	private final long count;
+	private final LongBuffer bitmap;
+	private final LongBuffer checkpoints;
+	private final ByteBuffer gaps;
+
+	private PrimeTable(long limit, long count, LongBuffer bitmap,
+					   LongBuffer checkpoints, ByteBuffer gaps) {
+		this.limit = limit;
+		this.count = count;
+		this.bitmap = bitmap;
+		this.checkpoints = checkpoints;
+		this.gaps = gaps;
+	}
+
+	/**
+	 * Open the {@link PrimeTable} at {@link #DEFAULT_PATH}.
+	 *
+	 * @see #open(Path, long)
+	 */
+	public static PrimeTable open(long limit) throws IOException {
+		return open(DEFAULT_PATH, limit);
+	}
+
+	/**
+	 * Open the {@link PrimeTable} stored at {@code path}, if it exists and contains
+	 * all the primes below {@code limit}. Otherwise a new table is built by
+	 * {@link #build(Path, long)}, replacing the file.<br />
+	 * Note that the returned table might have a larger limit than requested.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If a new table has to be built and {@code limit < 3} or {@code limit >
+	 * 		MAX_LIMIT}.
+	 */
+	public static PrimeTable open(Path path, long limit) throws IOException {
+		if (Files.exists(path)) {
+			PrimeTable table = load(path);
+			if (table != null && table.limit >= limit) return table;
+		}
+		if (limit < 3 || limit > MAX_LIMIT)
+			throw new IllegalArgumentException("Illegal limit: " + limit);
+		// build aside and move, so that a table still mapped by others stays intact
+		Path directory = path.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(directory, "primes", null);
+		boolean moved = false;
+		try {
+			build(temp, limit);
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			moved = true;
+		} finally {
+			if (!moved) Files.deleteIfExists(temp);  // never leave a partial table behind
+		}
+		return load(path);
+	}
+
+	/**
+	 * Sieve all the primes below {@code limit} and write them to {@code path}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code limit < 3} or {@code limit > }{@link #MAX_LIMIT}.
+	 */
+	public static void build(Path path, long limit) throws IOException {
+		if (limit < 3 || limit > MAX_LIMIT)
+			throw new IllegalArgumentException("Illegal limit: " + limit);
+
+		try (FileChannel channel = FileChannel.open(path,
+				CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+			// odd numbers 2 * i + 1 below limit, 2 is handled separately
+			long bitmapBytes = bitmapBytes(limit);
+			LongBuffer bitmap = map(channel, FileChannel.MapMode.READ_WRITE,
+					HEADER_BYTES, bitmapBytes).asLongBuffer();
+			for (int i = 0, words = bitmap.capacity(); i < words; ++i) bitmap.put(i, 0);
+			long[] count = {1};  // 2 is not in the bitmap
+			new SegmentedSieve(3, limit).forEach(p -> {
+				int i = (int) (p >>> 1);
+				bitmap.put(i >>> 6, bitmap.get(i >>> 6) | 1L << i);
+				++count[0];
+			});
+
+			long checkpointBytes = checkpointCount(count[0]) * 8;
+			LongBuffer checkpoints = map(channel, FileChannel.MapMode.READ_WRITE,
+					HEADER_BYTES + bitmapBytes, checkpointBytes).asLongBuffer();
+			ByteBuffer gaps = map(channel, FileChannel.MapMode.READ_WRITE,
+					HEADER_BYTES + bitmapBytes + checkpointBytes, count[0]);
+			checkpoints.put(0, 2);
+			gaps.put(0, (byte) 0);
+			long previous = 2;
+			int index = 1;
+			for (int w = 0, words = bitmap.capacity(); w < words; ++w)
+				for (long mask = bitmap.get(w); mask != 0; mask &= mask - 1, ++index) {
+					long p = (((long) w << 6) + Long.numberOfTrailingZeros(mask)) * 2 + 1;
+					if (index % STRIDE == 0) checkpoints.put(index / STRIDE, p);
+					gaps.put(index, (byte) ((p - previous) >>> 1));
+					previous = p;
+				}
+
+			// header goes last, so that an interrupted build is never loaded
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			header.putLong(MAGIC).putLong(limit).putLong(count[0]).putInt(STRIDE);
+			header.clear();
+			channel.write(header, 0);
+		}
+	}
+
+	/**
+	 * Load a {@link PrimeTable} stored at {@code path}, return {@code null} if the file
+	 * is not a valid table.
+	 */
+	public static PrimeTable load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			if (channel.read(header, 0) != HEADER_BYTES) return null;
+			header.flip();
+			if (header.getLong() != MAGIC) return null;
+			long limit = header.getLong();
+			long count = header.getLong();
+			if (header.getInt() != STRIDE) return null;
+
+			long bitmapBytes = bitmapBytes(limit);
+			long checkpointBytes = checkpointCount(count) * 8;
+			if (channel.size() < HEADER_BYTES + bitmapBytes + checkpointBytes + count)
+				return null;
+			FileChannel.MapMode mode = FileChannel.MapMode.READ_ONLY;
+			return new PrimeTable(limit, count,
+					map(channel, mode, HEADER_BYTES, bitmapBytes).asLongBuffer(),
+					map(channel, mode, HEADER_BYTES + bitmapBytes,
+							checkpointBytes).asLongBuffer(),
+					map(channel, mode, HEADER_BYTES + bitmapBytes + checkpointBytes,
+							count));
+		}
+	}
+
+	private static long bitmapBytes(long limit) {
+		return ((limit / 2 + 63) >>> 6) << 3;
+	}
+
+	private static long checkpointCount(long count) {
+		return (count + STRIDE - 1) / STRIDE;
+	}
+
+	private static ByteBuffer map(FileChannel channel, FileChannel.MapMode mode,
+								  long position, long size) throws IOException {
+		MappedByteBuffer buffer = channel.map(mode, position, size);
+		return buffer.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Return the limit of this table, all the primes below which are contained.
+	 */
+	public long getLimit() {
+		return this.limit;
+	}
+
+	/**
+	 * Return the number of primes in this table.
+	 */
+	public long size() {
+		return this.count;
+	}
+
+	/**
+	 * Test whether {@code n} is prime in {@code O(1)} time.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n} is not in {@code [0, limit)}.
+	 */
+	public boolean isPrime(long n) {
+		if (n < 0 || n >= this.limit)
+			throw new IllegalArgumentException("Out of table: " + n);
+		if ((n & 1) == 0) return n == 2;
+		int i = (int) (n >>> 1);
+		return (this.bitmap.get(i >>> 6) & 1L << i) != 0;
+	}
+
+	/**
+	 * Return the {@code index}-th prime (starting from {@code get(0) = 2}) in {@code
+	 * O(}{@value #STRIDE}{@code )} time.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * 		If {@code index} is not in {@code [0, size())}.
+	 */
+	public long get(long index) {
+		if (index < 0 || index >= this.count)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		int checkpoint = (int) (index / STRIDE);
+		long p = this.checkpoints.get(checkpoint);
+		for (int i = checkpoint * STRIDE + 1; i <= index; ++i)
+			p = i == 1 ? 3 : p + ((this.gaps.get(i) & 0xFF) << 1);
+		return p;
+	}
+
+	/**
+	 * Invoke {@code action} on every prime in this table in ascending order.
+	 */
+	public void forEach(LongConsumer action) {
+		PrimitiveIterator.OfLong iterator = this.iterator();
+		while (iterator.hasNext()) action.accept(iterator.nextLong());
+	}
+
+	/**
+	 * Return a {@link PrimitiveIterator.OfLong} traversing all the primes in this table
+	 * in ascending order.
+	 */
+	public PrimitiveIterator.OfLong iterator() {
+		return new PrimitiveIterator.OfLong() {
+			private int index = 0;
+			private long p = 2;
+
+			@Override
+			public boolean hasNext() {
+				return this.index < PrimeTable.this.count;
+			}
+
+			@Override
+			public long nextLong() {
+				if (!this.hasNext()) throw new NoSuchElementException();
+				if (this.index == 1) this.p = 3;
+				else if (this.index > 1)
+					this.p += (PrimeTable.this.gaps.get(this.index) & 0xFF) << 1;
+				++this.index;
+				return this.p;
+			}
+		};
+	}
+
+	/**
+	 * Return a {@link LongStream} containing all the primes in this table in
+	 * ascending order.<br />
+	 * The returned {@link LongStream} is SEQUENTIAL.
+	 */
+	public LongStream stream() {
+		return asStream(this.iterator());
+	}
+}
@@ -1,122 +1,384 @@
 package io.github.std4453.projecteuler.utils;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
 import java.util.PrimitiveIterator;
-import java.util.function.IntPredicate;
-import java.util.function.LongPredicate;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import static io.github.std4453.projecteuler.utils.StreamUtils.asStream;
 
 /**
  *
  */
 public class Primes {
-	// TODO: improve speed of intPrimesStream() and longPrimesStream()
+	// the first range sieved by UnboundedPrimeIterator
+	private static final long INITIAL_BOUND = 1 << 10;
 
 	/**
-	 * Construct a new {@link IntStream} containing all the primes.
+	 * Construct a new {@link IntStream} containing all the primes.<br />
+	 * The stream ends at the largest prime below {@code 2^31}.
+	 *
+	 * @see UnboundedPrimeIterator
 	 */
 	public static IntStream intPrimesStream() {
-		return new IntPrimeStreamWrapper().getPrimes();
+		return asStream(new UnboundedPrimeIterator(Integer.MAX_VALUE + 1L))
+				.mapToInt(p -> (int) p);
 	}
 
 	/**
-	 * Construct a new {@link LongStream} containing all the primes.
+	 * Construct a new {@link LongStream} containing all the primes.<br />
+	 * The stream ends at the largest prime below {@link SegmentedSieve#MAX_BOUND}.
+	 *
+	 * @see UnboundedPrimeIterator
 	 */
 	public static LongStream longPrimesStream() {
-		return new LongPrimeStreamWrapper().getPrimes();
+		return asStream(new UnboundedPrimeIterator(SegmentedSieve.MAX_BOUND));
 	}
 
 	/**
-	 * Algorithm copied from https://stackoverflow.com/questions/43760641/java-8-streams-and-the-sieve-of-eratosthenes
-	 * since a mutable field is required in this case, we use a wrapper.
+	 * Since the number of primes needed is unknown in advance, the primes are sieved
+	 * in ranges {@code [0, 1024), [1024, 2048), [2048, 4096)...}, each one twice as
+	 * long as the previous one, every range being sieved by a {@link SegmentedSieve}.
+	 * <br />Therefore getting the n-th prime costs about {@code O(n * log(log(n)))}
+	 * instead of trial-dividing every candidate by all the previous primes, while at
+	 * most one range is pending at a time and the memory cost stays at {@code
+	 * O(sqrt(p))}.
 	 */
-	private static class IntPrimeStreamWrapper {
-		private IntArrayList resolvedPrimes = new IntArrayList();
-		private IntPredicate isPrime = x -> {
-			PrimitiveIterator.OfInt iterator = resolvedPrimes.intIterator();
-			while (iterator.hasNext()) {
-				int prime = iterator.next();
-				if (x % prime == 0) return false;
-			}
-			return true;
-		};
-		private IntStream primes = IntStream.iterate(2, i -> i + 1)
-				.filter(i -> isPrime.test(i))
-				.peek(resolvedPrimes::add);
+	private static class UnboundedPrimeIterator implements PrimitiveIterator.OfLong {
+		private final long max;
+		private long high = INITIAL_BOUND;
+		private PrimitiveIterator.OfLong range;
 
-		IntStream getPrimes() {
-			return primes;
+		UnboundedPrimeIterator(long max) {
+			this.max = max;
+			this.range = new SegmentedSieve(0, Math.min(INITIAL_BOUND, max)).iterator();
 		}
-	}
 
-	/**
-	 * {@code long} version of {@link IntPrimeStreamWrapper}.
-	 *
-	 * @see IntPrimeStreamWrapper
-	 */
-	private static class LongPrimeStreamWrapper {
-		private LongArrayList resolvedPrimes = new LongArrayList();
-		private LongPredicate isPrime = x -> {
-			PrimitiveIterator.OfLong iterator = resolvedPrimes.longIterator();
-			while (iterator.hasNext()) {
-				long prime = iterator.next();
-				if (x % prime == 0) return false;
+		@Override
+		public boolean hasNext() {
+			while (!this.range.hasNext()) {
+				if (this.high >= this.max) return false;
+				long low = this.high;
+				this.high = Math.min(low * 2, this.max);  // double the range
+				this.range = new SegmentedSieve(low, this.high).iterator();
 			}
 			return true;
-		};
-		private LongStream primes = LongStream.iterate(2, i -> i + 1)
-				.filter(i -> isPrime.test(i))
-				.peek(resolvedPrimes::add);
+		}
 
-		LongStream getPrimes() {
-			return primes;
+		@Override
+		public long nextLong() {
+			if (!this.hasNext()) throw new NoSuchElementException();
+			return this.range.nextLong();
 		}
 	}
 
+	// all primes below 64, used for trial division before Miller-Rabin
+	private static final int[] TRIAL_PRIMES = {
+			2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61};
+	// Miller-Rabin with these bases is deterministic for all n < 2^64, see
+	// https://miller-rabin.appspot.com
+	private static final long[] WITNESSES = {
+			2, 325, 9375, 28178, 450775, 9780504, 1795265022};
+
+	/**
+	 * Test whether the given {@code long n} is prime.<br />
+	 * Small prime factors are removed by trial division first, then the
+	 * <a href="https://en.wikipedia.org/wiki/Miller%E2%80%93Rabin_primality_test"><i>Miller-Rabin
+	 * primality test</i></a> is run on a fixed set of 7 witnesses, which makes it
+	 * deterministic for all {@code long} inputs. All the modular multiplications are
+	 * carried out by {@link Montgomery}, therefore nothing overflows.<br />
+	 * This method takes {@code O(log(n))} time and {@code O(1)} space.
+	 */
 	public static boolean isPrime(long n) {
-		return false;
-		// TODO: implement a fast algorithm
+		if (n < 2) return false;
+		for (int p : TRIAL_PRIMES) if (n % p == 0) return n == p;
+		if (n < 67 * 67) return true;  // no factor below 67 and n < 67^2
+
+		Montgomery mont = new Montgomery(n);
+		long one = mont.one();
+		long minusOne = n - one;
+		int s = Long.numberOfTrailingZeros(n - 1);
+		long d = (n - 1) >> s;  // n - 1 = d * 2^s where d is odd
+		for (long witness : WITNESSES) {
+			long a = witness % n;
+			if (a == 0) continue;
+			long x = mont.pow(mont.toMontgomery(a), d);
+			if (x == one || x == minusOne) continue;
+			boolean composite = true;
+			for (int i = 1; i < s && composite; ++i) {
+				x = mont.mult(x, x);
+				if (x == minusOne) composite = false;
+			}
+			if (composite) return false;
+		}
+		return true;
 	}
 
 	/**
 	 * Generate a {@link IntArrayList} containing all the primes under {@code max}.<br />
 	 * The program uses the <a href="https://en.wikipedia.org/wiki/Sieve_of_Eratosthenes"><i>Sieve
 	 * of Eratosthenes</i></a> to generate the demanded primes, with complexity {@code
-	 * O(n * log(n) * log(log(n)))}.<br />
-	 * This method requires spacial complexity {@code O(n)}.
+	 * O(n * log(log(n)))}.<br />
+	 * The sieving itself is done by a {@link SegmentedSieve}, which requires only
+	 * {@code O(sqrt(n))} space, therefore the memory cost is dominated by the returned
+	 * list.
+	 *
+	 * @see SegmentedSieve
 	 */
 	public static IntArrayList sievePrimesInt(int max) {
-		IntArrayList primes = new IntArrayList();
-		boolean[] notPrime = new boolean[max];
-		notPrime[0] = notPrime[1] = true;
-		for (int i = 0; i < max; ++i)
-			if (!notPrime[i]) {
-				for (int j = i * 2; j < max; j += i) notPrime[j] = true;
-				primes.add(i);
-			}
+		IntArrayList primes = new IntArrayList((int) SegmentedSieve.estimateCount(max));
+		new SegmentedSieve(0, max).forEach(p -> primes.add((int) p));
 		return primes;
 	}
 
 	/**
 	 * The {@code long} version of {@link #sievePrimesInt(int)}.<br />
-	 * Note that since this method requires {@code O(n)} space and applying for amount
-	 * of memory that can only be described by a {@code long} is unrealistic, this
-	 * method still takes an {@code int max} instead of a {@code long max} as input.
-	 * Therefore, it should be used only to save the effort (and time) converting the
-	 * return value of {@link #sievePrimesInt(int)} from {@link IntArrayList} to
-	 * {@link LongArrayList}.
+	 * It is equivalent to {@link #sievePrimesLong(long, long) sievePrimesLong(0,
+	 * max)}.
 	 *
 	 * @see #sievePrimesInt(int)
 	 */
 	public static LongArrayList sievePrimesLong(int max) {
-		LongArrayList primes = new LongArrayList();
-		boolean[] notPrime = new boolean[max];
-		notPrime[0] = notPrime[1] = true;
-		for (int i = 0; i < max; ++i)
-			if (!notPrime[i]) {
-				for (int j = i * 2; j < max; j += i) notPrime[j] = true;
-				primes.add((long) i);
-			}
+		return sievePrimesLong(0, max);
+	}
+
+	/**
+	 * Generate a {@link LongArrayList} containing all the primes in {@code [from,
+	 * to)}.<br />
+	 * Note that although the bounds are {@code longs}, the returned list can contain at
+	 * most {@link Integer#MAX_VALUE} elements. To handle more primes than that, use
+	 * {@link #forEachPrime(long, long, LongConsumer)} or {@link #primesStream(long,
+	 * long)} which do not store the primes at all.
+	 *
+	 * @see SegmentedSieve
+	 */
+	public static LongArrayList sievePrimesLong(long from, long to) {
+		// only a growth hint, sized from the window rather than from 0
+		long capacity = Math.max(0, SegmentedSieve.estimateCount(to) -
+				SegmentedSieve.estimateCount(from));
+		LongArrayList primes = new LongArrayList((int) Math.min(capacity, 1 << 30));
+		new SegmentedSieve(from, to).forEach(primes::add);
 		return primes;
 	}
+
+	/**
+	 * Invoke {@code action} on every prime in {@code [from, to)} in ascending order,
+	 * using {@code O(sqrt(to))} memory.
+	 *
+	 * @see SegmentedSieve#forEach(LongConsumer)
+	 */
+	public static void forEachPrime(long from, long to, LongConsumer action) {
+		new SegmentedSieve(from, to).forEach(action);
+	}
+
+	/**
+	 * Return a {@link LongStream} containing all the primes in {@code [from, to)} in
+	 * ascending order, using {@code O(sqrt(to))} memory.<br />
+	 * The returned {@link LongStream} is SEQUENTIAL.
+	 *
+	 * @see SegmentedSieve#iterator()
+	 */
+	public static LongStream primesStream(long from, long to) {
+		return asStream(new SegmentedSieve(from, to).iterator());
+	}
+
+	/**
+	 * Return a {@link LongStream} containing all the primes in {@code [from, to)} in
+	 * ascending order.<br />
+	 * Unlike {@link #primesStream(long, long)}, the returned stream is backed by a
+	 * splittable {@link Spliterator}, so that after {@link LongStream#parallel()} the
+	 * segments are sieved on different threads, for example {@code range(0,
+	 * 1_000_000_000).parallel().sum()}. Being {@link Spliterator#SORTED SORTED} and
+	 * {@link Spliterator#DISTINCT DISTINCT}, {@link LongStream#sorted()} and {@link
+	 * LongStream#distinct()} cost nothing.<br />
+	 * The returned {@link LongStream} is SEQUENTIAL.
+	 *
+	 * @see SegmentedSieve#spliterator()
+	 */
+	public static LongStream range(long from, long to) {
+		return StreamSupport.longStream(new SegmentedSieve(from, to).spliterator(), false);
+	}
+
+	/**
+	 * {@code int} version of {@link #range(long, long)}.
+	 */
+	public static IntStream intRange(int from, int to) {
+		Spliterator.OfLong primes = new SegmentedSieve(from, to).spliterator();
+		return StreamSupport.intStream(new IntPrimeSpliterator(primes), false);
+	}
+
+	private static class IntPrimeSpliterator implements Spliterator.OfInt {
+		private final Spliterator.OfLong primes;
+
+		IntPrimeSpliterator(Spliterator.OfLong primes) {
+			this.primes = primes;
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			return this.primes.tryAdvance((long p) -> action.accept((int) p));
+		}
+
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			this.primes.forEachRemaining((long p) -> action.accept((int) p));
+		}
+
+		@Override
+		public Spliterator.OfInt trySplit() {
+			Spliterator.OfLong prefix = this.primes.trySplit();
+			return prefix == null ? null : new IntPrimeSpliterator(prefix);
+		}
+
+		@Override
+		public long estimateSize() {
+			return this.primes.estimateSize();
+		}
+
+		@Override
+		public int characteristics() {
+			return this.primes.characteristics();
+		}
+
+		@Override
+		public Comparator<? super Integer> getComparator() {
+			return null;  // natural order
+		}
+	}
+
+	/**
+	 * Parallel version of {@link #sievePrimesInt(int)}, using {@code threads} threads.
+	 * <br />The segments are sieved independently and the primes are collected in
+	 * ascending order.
+	 *
+	 * @see SegmentedSieve#parallelCollect(int, Supplier, ObjLongConsumer, BiConsumer)
+	 */
+	public static IntArrayList sievePrimesIntParallel(int max, int threads) {
+		return new SegmentedSieve(0, max).parallelCollect(threads, IntArrayList::new,
+				(list, p) -> list.add((int) p), IntArrayList::addAll);
+	}
+
+	/**
+	 * {@link #sievePrimesIntParallel(int, int)} using all available processors.
+	 */
+	public static IntArrayList sievePrimesIntParallel(int max) {
+		return sievePrimesIntParallel(max, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Parallel version of {@link #sievePrimesLong(long, long)}, using {@code threads}
+	 * threads.
+	 *
+	 * @see #sievePrimesIntParallel(int, int)
+	 */
+	public static LongArrayList sievePrimesLongParallel(long from, long to, int threads) {
+		return new SegmentedSieve(from, to).parallelCollect(threads, LongArrayList::new,
+				LongArrayList::add, LongArrayList::addAll);
+	}
+
+	/**
+	 * Count the primes in {@code [from, to)} using {@code threads} threads.
+	 *
+	 * @see SegmentedSieve#parallelCount(int)
+	 */
+	public static long countPrimesParallel(long from, long to, int threads) {
+		return new SegmentedSieve(from, to).parallelCount(threads);
+	}
+
+	/**
+	 * {@link #countPrimesParallel(long, long, int)} using all available processors.
+	 */
+	public static long countPrimesParallel(long from, long to) {
+		return countPrimesParallel(from, to, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Sum the primes in {@code [from, to)} using {@code threads} threads.
+	 *
+	 * @see SegmentedSieve#parallelSum(int)
+	 */
+	public static long sumPrimesParallel(long from, long to, int threads) {
+		return new SegmentedSieve(from, to).parallelSum(threads);
+	}
+
+	/**
+	 * {@link #sumPrimesParallel(long, long, int)} using all available processors.
+	 */
+	public static long sumPrimesParallel(long from, long to) {
+		return sumPrimesParallel(from, to, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Return a {@link PrimeTable} containing all the primes below {@code limit}, which
+	 * is sieved and written to {@link PrimeTable#DEFAULT_PATH} on the first call, and
+	 * only memory-mapped by all the following calls, even from other JVMs.
+	 *
+	 * @see PrimeTable#open(Path, long)
+	 */
+	public static PrimeTable primeTable(long limit) throws IOException {
+		return PrimeTable.open(limit);
+	}
+
+	/**
+	 * Return {@code pi(x)}, the number of primes {@code <= x}, in {@code O(x^(3/4) /
+	 * log(x))} time and {@code O(sqrt(x))} space, without enumerating the primes.
+	 *
+	 * @see LucyHedgehog
+	 */
+	public static long count(long x) {
+		return count(x, false);
+	}
+
+	/**
+	 * {@link #count(long)} with the option of running the updates in parallel.
+	 *
+	 * @see LucyHedgehog#LucyHedgehog(long, boolean)
+	 */
+	public static long count(long x, boolean parallel) {
+		if (x < 2) return 0;
+		return new LucyHedgehog(x, parallel).get(x);
+	}
+
+	/**
+	 * Return the sum of {@code p^k} over all primes {@code p <= x} modulo {@code
+	 * modulus}, in {@code O(x^(3/4) / log(x))} time and {@code O(sqrt(x))} space.
+	 * <br />When {@code modulus} is 0, the sum is calculated modulo {@code 2^64} and
+	 * the returned value should be treated as unsigned.
+	 *
+	 * @see LucyHedgehog#LucyHedgehog(long, int, long, boolean)
+	 */
+	public static long sumOfPowers(long x, int k, long modulus) {
+		if (x < 2) return 0;
+		return new LucyHedgehog(x, k, modulus, false).get(x);
+	}
+
+	/**
+	 * Return the exact sum of {@code p^k} over all primes {@code p <= x}.<br />
+	 * The sum is calculated modulo {@code 2^64} and modulo {@code 2^61 - 1} by {@link
+	 * #sumOfPowers(long, int, long)}, and then combined by {@link
+	 * MathsHelper#fromResidues(long, long)}, so no {@link BigInteger} is involved until
+	 * the very end. This works as long as the sum is less than {@code 2^64 * (2^61 -
+	 * 1)}, which covers {@code k <= 2} for all {@code x <= 10^12}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code x^(k + 1) >= 2^125}, in which case the sum might be too large.
+	 */
+	public static BigInteger sumOfPowersExact(long x, int k) {
+		if (x < 2) return BigInteger.ZERO;
+		if ((k + 1) * Math.log(x) >= 125 * Math.log(2))
+			throw new IllegalArgumentException("Sum might be too large: " + x + ", " + k);
+		return MathsHelper.fromResidues(sumOfPowers(x, k, 0),
+				sumOfPowers(x, k, MathsHelper.MERSENNE_61));
+	}
 }
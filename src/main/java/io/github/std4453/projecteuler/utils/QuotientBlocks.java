@@ -0,0 +1,193 @@
+package io.github.std4453.projecteuler.utils;
+
+import java.util.stream.LongStream;
+
+/**
+ * {@code QuotientBlocks} iterates the <i>quotient blocks</i> of {@code n}, that is,
+ * the maximal ranges {@code [l, r]} of {@code i} over which {@code q = floor(n / i)}
+ * stays the same. The last index of the block starting at {@code l} is {@code r =
+ * floor(n / floor(n / l))}.<br />
+ * For {@code i <= s = floor(sqrt(n))} every block is a single index, while for {@code
+ * i > s} every {@code q} in {@code [1, floor(n / (s + 1))]} has a block of its own, so
+ * that there are only {@code s + floor(n / (s + 1)) < 2 * sqrt(n)} blocks. Therefore a
+ * sum like {@code sum(f(i) * g(floor(n / i)), i = 1..n)}, where the prefix sums of
+ * {@code f} are known, takes {@code O(sqrt(n))} instead of {@code O(n)} time.<br />
+ * Since the blocks can also be numbered in closed form, {@link #starts(long, long,
+ * long)} is a sized stream that splits evenly for parallel execution.
+ */
+public class QuotientBlocks {
+	/**
+	 * {@code BlockConsumer} receives one quotient block.
+	 */
+	@FunctionalInterface
+	public interface BlockConsumer {
+		/**
+		 * Accept the block {@code [l, r]}, over which {@code floor(n / i) = q}.
+		 */
+		void accept(long q, long l, long r);
+	}
+
+	/**
+	 * {@code BiBlockConsumer} receives one two-dimensional quotient block.
+	 */
+	@FunctionalInterface
+	public interface BiBlockConsumer {
+		/**
+		 * Accept the block {@code [l, r]}, over which {@code floor(n / i) = qn} and
+		 * {@code floor(m / i) = qm}.
+		 */
+		void accept(long qn, long qm, long l, long r);
+	}
+
+	/**
+	 * Return the number of quotient blocks of {@code n} in {@code [1, n]}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0}.
+	 */
+	public static long count(long n) {
+		checkN(n);
+		long s = MathsHelper.isqrt(n);
+		return s + n / (s + 1);
+	}
+
+	/**
+	 * Invoke {@code action} on every quotient block of {@code n} in {@code [1, n]}, in
+	 * ascending order.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0}.
+	 */
+	public static void forEach(long n, BlockConsumer action) {
+		forEach(n, 1, n, action);
+	}
+
+	/**
+	 * Invoke {@code action} on every quotient block of {@code n} in ascending order,
+	 * clipped to {@code [from, to]}. Indices above {@code n} form one last block with
+	 * {@code q = 0}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0} or {@code from < 1}.
+	 */
+	public static void forEach(long n, long from, long to, BlockConsumer action) {
+		checkRange(n, from);
+		for (long l = from, r; l <= to; l = r + 1) {
+			long q = n / l;
+			r = q == 0 ? to : Math.min(n / q, to);
+			action.accept(q, l, r);
+		}
+	}
+
+	/**
+	 * Invoke {@code action} on every maximal block {@code [l, r]} in {@code [1, min(n,
+	 * m)]} over which both {@code floor(n / i)} and {@code floor(m / i)} stay the same,
+	 * in ascending order. There are less than {@code 2 * (sqrt(n) + sqrt(m))} of them.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0} or {@code m < 0}.
+	 */
+	public static void forEach(long n, long m, BiBlockConsumer action) {
+		checkN(n);
+		checkN(m);
+		forEach(n, m, 1, Math.min(n, m), action);
+	}
+
+	private static void forEach(long n, long m, long from, long to,
+								BiBlockConsumer action) {
+		for (long l = from, r; l <= to; l = r + 1) {
+			long qn = n / l, qm = m / l;
+			r = Math.min(Math.min(n / qn, m / qm), to);
+			action.accept(qn, qm, l, r);
+		}
+	}
+
+	/**
+	 * Invoke {@code action} on every quotient block of {@code n} in {@code [1, n]} in
+	 * parallel, in no particular order. {@code action} must therefore be thread-safe.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0}.
+	 */
+	public static void parallelForEach(long n, BlockConsumer action) {
+		starts(n, 1, n).parallel().forEach(l -> {
+			long q = n / l;
+			action.accept(q, l, n / q);
+		});
+	}
+
+	/**
+	 * Invoke {@code action} on every two-dimensional block of {@code n} and {@code m}
+	 * in parallel, in no particular order, by splitting the blocks of the larger one of
+	 * them further. {@code action} must therefore be thread-safe.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0} or {@code m < 0}.
+	 *
+	 * @see #forEach(long, long, BiBlockConsumer)
+	 */
+	public static void parallelForEach(long n, long m, BiBlockConsumer action) {
+		checkN(n);
+		checkN(m);
+		long max = Math.max(n, m), to = Math.min(n, m);
+		starts(max, 1, to).parallel().forEach(l -> {
+			long r = Math.min(max / (max / l), to);
+			forEach(n, m, l, r, action);
+		});
+	}
+
+	/**
+	 * Return the first indices {@code l} of the quotient blocks of {@code n} in {@code
+	 * [1, n]}, in ascending order.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0}.
+	 *
+	 * @see #starts(long, long, long)
+	 */
+	public static LongStream starts(long n) {
+		return starts(n, 1, n);
+	}
+
+	/**
+	 * Return the first indices {@code l} of the quotient blocks of {@code n} clipped to
+	 * {@code [from, to]}, where {@code to <= n}, in ascending order. The rest of the
+	 * block is {@code [l, min(floor(n / floor(n / l)), to)]}.<br />
+	 * The {@code j}-th block of {@code n} starts at {@code j + 1} for {@code j < s} and
+	 * at {@code floor(n / (q + 1)) + 1} with {@code q = floor(n / (s + 1)) - (j - s)}
+	 * otherwise, so that the returned stream is backed by a {@link
+	 * LongStream#range(long, long)} of block numbers, which is sized and splits evenly.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 0}, {@code from < 1} or {@code to > n}.
+	 */
+	public static LongStream starts(long n, long from, long to) {
+		checkRange(n, from);
+		if (to > n) throw new IllegalArgumentException("Illegal to: " + to);
+		if (from > to) return LongStream.empty();
+		long s = MathsHelper.isqrt(n);
+		return LongStream.rangeClosed(index(n, s, from), index(n, s, to))
+				.map(j -> Math.max(start(n, s, j), from));
+	}
+
+	// number of the block containing i, for 1 <= i <= n
+	private static long index(long n, long s, long i) {
+		return i <= s ? i - 1 : s + n / (s + 1) - n / i;
+	}
+
+	// first index of the j-th block
+	private static long start(long n, long s, long j) {
+		if (j < s) return j + 1;
+		long q = n / (s + 1) - (j - s);
+		return n / (q + 1) + 1;
+	}
+
+	private static void checkN(long n) {
+		if (n < 0) throw new IllegalArgumentException("Illegal n: " + n);
+	}
+
+	private static void checkRange(long n, long from) {
+		checkN(n);
+		if (from < 1) throw new IllegalArgumentException("Illegal from: " + from);
+	}
+}
@@ -0,0 +1,78 @@
+package io.github.std4453.projecteuler.utils;
+
+import java.util.function.LongUnaryOperator;
+
+/**
+ * {@code QuotientSums} holds the values {@code F(v)} of a summatory function at the
+ * points {@code v = n / i} (integer division), which are the only points needed by
+ * most of the summatory algorithms, since {@code (n / a) / b = n / (a * b)}.<br />
+ * The values are evaluated lazily by a given function on the first {@link
+ * #get(long)} and then memoized in two arrays, like {@link LucyHedgehog} does: {@code
+ * small[v]} for {@code v <= sqrt(n)} and {@code large[i] = F(n / i)} for {@code i <=
+ * sqrt(n)}, so that evaluating {@code F} at a point may recursively read other points
+ * of the same table, e.g. for {@link Dirichlet#convolve(long[], QuotientSums, long[],
+ * QuotientSums, long)}.<br />
+ * Since the memoization is unsynchronized, an instance must not be shared between
+ * threads before all the needed values are evaluated.
+ */
+public class QuotientSums {
+	private final long n;
+	private final int sqrt;
+	private final LongUnaryOperator function;
+	private final long[] small;
+	private final long[] large;
+	private final boolean[] smallKnown;
+	private final boolean[] largeKnown;
+
+	/**
+	 * Construct the table of {@code F(n / i)}, evaluating nothing yet.
+	 *
+	 * @param function
+	 * 		The function that evaluates {@code F(v)}, called at most once for each
+	 * 		point.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n < 1}.
+	 */
+	public QuotientSums(long n, LongUnaryOperator function) {
+		if (n < 1) throw new IllegalArgumentException("Illegal n: " + n);
+		this.n = n;
+		this.sqrt = (int) MathsHelper.isqrt(n);
+		this.function = function;
+		this.small = new long[this.sqrt + 1];
+		this.large = new long[this.sqrt + 1];
+		this.smallKnown = new boolean[this.sqrt + 1];
+		this.largeKnown = new boolean[this.sqrt + 1];
+	}
+
+	/**
+	 * Return {@code F(v)}, where {@code v} must be {@code n / i} for some positive
+	 * integer {@code i}, or any integer in {@code [0, sqrt(n)]}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code v} is not in the table.
+	 */
+	public long get(long v) {
+		if (v < 0 || v > this.n) throw new IllegalArgumentException("Not in table: " + v);
+		if (v <= this.sqrt) {
+			int index = (int) v;
+			if (!this.smallKnown[index]) {
+				this.small[index] = this.function.applyAsLong(v);
+				this.smallKnown[index] = true;
+			}
+			return this.small[index];
+		}
+		long k = this.n / v;
+		if (this.n / k != v) throw new IllegalArgumentException("Not in table: " + v);
+		int index = (int) k;
+		if (!this.largeKnown[index]) {
+			this.large[index] = this.function.applyAsLong(v);
+			this.largeKnown[index] = true;
+		}
+		return this.large[index];
+	}
+
+	public long getN() {
+		return this.n;
+	}
+}
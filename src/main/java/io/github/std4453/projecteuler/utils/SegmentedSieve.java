@@ -0,0 +1,500 @@
+package io.github.std4453.projecteuler.utils;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+import static io.github.std4453.projecteuler.utils.MathsHelper.isqrt;
+
+/**
+ * {@code SegmentedSieve} enumerates all the primes inside {@code [from, to)} using a
+ * segmented <a href="https://en.wikipedia.org/wiki/Sieve_of_Eratosthenes"><i>Sieve of
+ * Eratosthenes</i></a>.<br />
+ * Only odd numbers are stored, one bit for each, and the range is sieved segment by
+ * segment, where every segment contains {@link #SEGMENT_BITS} odd numbers (that is,
+ * 32KB of memory) so that it fits into the L1 / L2 cache of the CPU. Crossing off
+ * starts at {@code p^2} for every base prime {@code p}.<br />
+ * The time complexity is {@code O(n * log(log(n)))} while the spacial complexity is
+ * {@code O(sqrt(to))} (for the base primes) no matter how long the range is, therefore
+ * the primes can be consumed through {@link #forEach(LongConsumer)} or
+ * {@link #iterator()} without ever being stored in memory.
+ */
+public class SegmentedSieve {
+	/**
+	 * Number of odd numbers (bits) contained in one segment.
+	 */
+	public static final int SEGMENT_BITS = 1 << 18;
+	private static final int SEGMENT_WORDS = SEGMENT_BITS >>> 6;
+
+	/**
+	 * Maximum value of {@code to}, so that all the base primes fit in an {@code int}.
+	 */
+	public static final long MAX_BOUND = 1L << 62;
+
+	// base primes up to this limit are sieved with a plain (unsegmented) sieve
+	private static final int SMALL_LIMIT = 1 << 16;
+
+	private final long from;
+	private final long to;
+	private final int[] basePrimes;
+
+	/**
+	 * Construct a {@link SegmentedSieve} of primes in {@code [from, to)}.<br />
+	 * The base primes up to {@code sqrt(to)} are generated immediately, while the
+	 * range itself is sieved only when traversed.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code from < 0} or {@code to > }{@link #MAX_BOUND}.
+	 */
+	public SegmentedSieve(long from, long to) {
+		if (from < 0) throw new IllegalArgumentException("Negative from: " + from);
+		if (to > MAX_BOUND) throw new IllegalArgumentException("Too large: " + to);
+		this.from = from;
+		this.to = Math.max(from, to);
+		this.basePrimes = basePrimes(this.to <= 1 ? 0 : (int) isqrt(this.to - 1));
+	}
+
+	/**
+	 * Invoke {@code action} on every prime in {@code [from, to)} in ascending order.
+	 */
+	public void forEach(LongConsumer action) {
+		if (this.from <= 2 && 2 < this.to) action.accept(2);
+		long[] words = new long[SEGMENT_WORDS];
+		for (long low = this.firstOdd(); low < this.to; low += 2L * SEGMENT_BITS) {
+			int bits = this.segmentBits(low);
+			sieveSegment(low, bits, words, this.basePrimes);
+			forEachInSegment(low, bits, words, action);
+		}
+	}
+
+	/**
+	 * Return the number of primes in {@code [from, to)}.
+	 */
+	public long count() {
+		long count = this.from <= 2 && 2 < this.to ? 1 : 0;
+		long[] words = new long[SEGMENT_WORDS];
+		for (long low = this.firstOdd(); low < this.to; low += 2L * SEGMENT_BITS) {
+			int bits = this.segmentBits(low);
+			sieveSegment(low, bits, words, this.basePrimes);
+			count += countInSegment(bits, words);
+		}
+		return count;
+	}
+
+	/**
+	 * Return a {@link PrimitiveIterator.OfLong} traversing all the primes in {@code
+	 * [from, to)} in ascending order. The segments are sieved lazily, one at a time.
+	 */
+	public PrimitiveIterator.OfLong iterator() {
+		return new PrimeIterator();
+	}
+
+	/**
+	 * Return a {@link Spliterator.OfLong} over all the primes in {@code [from, to)},
+	 * which is {@link Spliterator#ORDERED ORDERED}, {@link Spliterator#SORTED SORTED},
+	 * {@link Spliterator#DISTINCT DISTINCT}, {@link Spliterator#NONNULL NONNULL} and
+	 * {@link Spliterator#IMMUTABLE IMMUTABLE}.<br />
+	 * {@link Spliterator#trySplit()} hands off whole segments, so that a parallel
+	 * stream built upon it sieves different segments on different threads.
+	 * {@link Spliterator#estimateSize()} is an estimation based on the <i>prime number
+	 * theorem</i>.
+	 */
+	public Spliterator.OfLong spliterator() {
+		long first = this.firstOdd();
+		long segments = first >= this.to ? 0 :
+				(this.to - first + 2L * SEGMENT_BITS - 1) / (2L * SEGMENT_BITS);
+		return new PrimeSpliterator(0, segments, this.from <= 2 && 2 < this.to);
+	}
+
+	private class PrimeSpliterator implements Spliterator.OfLong {
+		private long firstSegment;  // next segment to sieve
+		private long lastSegment;  // exclusive
+		private boolean two;
+		private long[] words;  // allocated lazily, since splitting comes first
+		private long low;  // low end of the segment being scanned
+		private int wordCount;  // number of words in the segment being scanned
+		private int wordIndex;  // index of the word being scanned
+		private long mask;  // remaining primes in the word being scanned
+
+		PrimeSpliterator(long firstSegment, long lastSegment, boolean two) {
+			this.firstSegment = firstSegment;
+			this.lastSegment = lastSegment;
+			this.two = two;
+		}
+
+		private long segmentLow(long segment) {
+			return SegmentedSieve.this.firstOdd() + segment * 2L * SEGMENT_BITS;
+		}
+
+		@Override
+		public boolean tryAdvance(LongConsumer action) {
+			if (this.two) {
+				this.two = false;
+				action.accept(2);
+				return true;
+			}
+			while (this.mask == 0) {
+				if (++this.wordIndex < this.wordCount) {
+					this.mask = ~this.words[this.wordIndex];
+					continue;
+				}
+				if (this.firstSegment >= this.lastSegment) return false;
+				if (this.words == null) this.words = new long[SEGMENT_WORDS];
+				this.low = this.segmentLow(this.firstSegment++);
+				int bits = SegmentedSieve.this.segmentBits(this.low);
+				sieveSegment(this.low, bits, this.words, SegmentedSieve.this.basePrimes);
+				this.wordCount = (bits + 63) >>> 6;
+				this.wordIndex = -1;
+			}
+			int bit = Long.numberOfTrailingZeros(this.mask);
+			this.mask &= this.mask - 1;
+			action.accept(this.low + (((long) this.wordIndex << 6) + bit) * 2);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(LongConsumer action) {
+			// finish the segment being scanned, then sieve the rest segment by segment
+			while ((this.two || this.mask != 0 || this.wordIndex + 1 < this.wordCount)
+					&& this.tryAdvance(action)) ;
+			if (this.firstSegment >= this.lastSegment) return;
+			if (this.words == null) this.words = new long[SEGMENT_WORDS];
+			for (; this.firstSegment < this.lastSegment; ++this.firstSegment) {
+				long low = this.segmentLow(this.firstSegment);
+				int bits = SegmentedSieve.this.segmentBits(low);
+				sieveSegment(low, bits, this.words, SegmentedSieve.this.basePrimes);
+				forEachInSegment(low, bits, this.words, action);
+			}
+			this.wordCount = 0;
+		}
+
+		@Override
+		public Spliterator.OfLong trySplit() {
+			long remaining = this.lastSegment - this.firstSegment;
+			if (remaining < 2) return null;
+			long middle = this.firstSegment + remaining / 2;
+
+			// the prefix takes over the segment being scanned (if any) and the 2
+			PrimeSpliterator prefix = new PrimeSpliterator(
+					this.firstSegment, middle, this.two);
+			prefix.words = this.words;
+			prefix.low = this.low;
+			prefix.wordCount = this.wordCount;
+			prefix.wordIndex = this.wordIndex;
+			prefix.mask = this.mask;
+
+			this.firstSegment = middle;
+			this.two = false;
+			this.words = null;
+			this.wordCount = this.wordIndex = 0;
+			this.mask = 0;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			long low = this.segmentLow(this.firstSegment);
+			long high = Math.min(this.segmentLow(this.lastSegment),
+					SegmentedSieve.this.to);
+			long estimate = high <= low ? 0 :
+					(long) ((high - low) / Math.log(Math.max(3, (low + high) / 2.0)));
+			// plus what is left in the segment being scanned
+			if (this.mask != 0 || this.wordIndex + 1 < this.wordCount)
+				estimate += (long) (2.0 * ((long) (this.wordCount - this.wordIndex) << 6)
+						/ Math.log(Math.max(3, this.low)));
+			return estimate + (this.two ? 1 : 0);
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | SORTED | DISTINCT | NONNULL | IMMUTABLE;
+		}
+
+		@Override
+		public Comparator<? super Long> getComparator() {
+			return null;  // natural order
+		}
+	}
+
+	/**
+	 * Parallel version of {@link java.util.stream.LongStream#collect(Supplier,
+	 * ObjLongConsumer, BiConsumer)} over the primes in {@code [from, to)}.<br />
+	 * The segments are distributed over a {@link ForkJoinPool} of {@code threads}
+	 * threads, all sharing the same base primes. Every task sieves its own segments
+	 * into its own container created by {@code supplier}, and the containers are
+	 * merged by {@code combiner} strictly in ascending order, so that an ordered
+	 * container (such as {@link LongArrayList}) receives the primes in ascending order
+	 * as well.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code threads <= 0}.
+	 */
+	public <R> R parallelCollect(int threads, Supplier<R> supplier,
+								 ObjLongConsumer<R> accumulator, BiConsumer<R, R> combiner) {
+		return this.parallel(threads, supplier,
+				(container, low, bits, words) -> forEachInSegment(low, bits, words,
+						p -> accumulator.accept(container, p)),
+				(container, p) -> accumulator.accept(container, p), combiner);
+	}
+
+	/**
+	 * Parallel version of {@link #count()}.
+	 *
+	 * @see #parallelCollect(int, Supplier, ObjLongConsumer, BiConsumer)
+	 */
+	public long parallelCount(int threads) {
+		return this.parallel(threads, () -> new long[1],
+				(count, low, bits, words) -> count[0] += countInSegment(bits, words),
+				(count, p) -> ++count[0],
+				(a, b) -> a[0] += b[0])[0];
+	}
+
+	/**
+	 * Return the sum of all the primes in {@code [from, to)}, computed in parallel.
+	 * <br />Note that the sum overflows when {@code to} exceeds about {@code 10^10}.
+	 *
+	 * @see #parallelCollect(int, Supplier, ObjLongConsumer, BiConsumer)
+	 */
+	public long parallelSum(int threads) {
+		return this.parallelCollect(threads, () -> new long[1],
+				(sum, p) -> sum[0] += p,
+				(a, b) -> a[0] += b[0])[0];
+	}
+
+	// consumes a sieved segment into a container
+	private interface SegmentConsumer<R> {
+		void accept(R container, long low, int bits, long[] words);
+	}
+
+	// leaf consumes whole sieved segments, while accumulator only receives the prime 2
+	private <R> R parallel(int threads, Supplier<R> supplier, SegmentConsumer<R> leaf,
+						   ObjLongConsumer<R> accumulator, BiConsumer<R, R> combiner) {
+		if (threads <= 0) throw new IllegalArgumentException("Illegal threads: " + threads);
+		long first = this.firstOdd();
+		long segments = first >= this.to ? 0 :
+				(this.to - first + 2L * SEGMENT_BITS - 1) / (2L * SEGMENT_BITS);
+		// about 8 tasks per thread to balance the load
+		long grain = Math.max(1, segments / (threads * 8L));
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.invoke(new SegmentTask<>(0, segments, grain,
+					supplier, leaf, accumulator, combiner));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * {@link RecursiveTask} sieving segments {@code [firstSegment, lastSegment)},
+	 * splitting itself in halves until no more than {@code grain} segments are left.
+	 * <br />The leftmost leaf also receives the prime 2, which is not sieved, first.
+	 */
+	private class SegmentTask<R> extends RecursiveTask<R> {
+		private static final long serialVersionUID = 1L;
+
+		private final long firstSegment;
+		private final long lastSegment;
+		private final long grain;
+		private final Supplier<R> supplier;
+		private final SegmentConsumer<R> leaf;
+		private final ObjLongConsumer<R> accumulator;
+		private final BiConsumer<R, R> combiner;
+
+		SegmentTask(long firstSegment, long lastSegment, long grain, Supplier<R> supplier,
+					SegmentConsumer<R> leaf, ObjLongConsumer<R> accumulator,
+					BiConsumer<R, R> combiner) {
+			this.firstSegment = firstSegment;
+			this.lastSegment = lastSegment;
+			this.grain = grain;
+			this.supplier = supplier;
+			this.leaf = leaf;
+			this.accumulator = accumulator;
+			this.combiner = combiner;
+		}
+
+		@Override
+		protected R compute() {
+			if (this.lastSegment - this.firstSegment > this.grain) {
+				long middle = (this.firstSegment + this.lastSegment) >>> 1;
+				SegmentTask<R> left = new SegmentTask<>(this.firstSegment, middle,
+						this.grain, this.supplier, this.leaf, this.accumulator,
+						this.combiner);
+				SegmentTask<R> right = new SegmentTask<>(middle, this.lastSegment,
+						this.grain, this.supplier, this.leaf, this.accumulator,
+						this.combiner);
+				right.fork();
+				R result = left.compute();
+				this.combiner.accept(result, right.join());  // merge in order
+				return result;
+			}
+
+			R result = this.supplier.get();
+			SegmentedSieve sieve = SegmentedSieve.this;  // shortcut
+			if (this.firstSegment == 0 && sieve.from <= 2 && 2 < sieve.to)
+				this.accumulator.accept(result, 2);
+			long[] words = new long[SEGMENT_WORDS];
+			long first = sieve.firstOdd();
+			for (long i = this.firstSegment; i < this.lastSegment; ++i) {
+				long low = first + i * 2L * SEGMENT_BITS;
+				int bits = sieve.segmentBits(low);
+				sieveSegment(low, bits, words, sieve.basePrimes);
+				this.leaf.accept(result, low, bits, words);
+			}
+			return result;
+		}
+	}
+
+	public long getFrom() {
+		return this.from;
+	}
+
+	public long getTo() {
+		return this.to;
+	}
+
+	// odd numbers below 3 are not prime, therefore sieving starts from 3
+	private long firstOdd() {
+		return Math.max(this.from, 3) | 1;
+	}
+
+	private int segmentBits(long low) {
+		return (int) Math.min(SEGMENT_BITS, (this.to - low + 1) >>> 1);
+	}
+
+	private class PrimeIterator implements PrimitiveIterator.OfLong {
+		private final long[] words = new long[SEGMENT_WORDS];
+		private boolean two = SegmentedSieve.this.from <= 2 && 2 < SegmentedSieve.this.to;
+		private long low;  // low end of the current segment
+		private int wordCount;  // number of words in the current segment
+		private int wordIndex;  // index of the word being scanned
+		private long mask;  // remaining primes in the word being scanned
+
+		PrimeIterator() {
+			this.low = SegmentedSieve.this.firstOdd() - 2L * SEGMENT_BITS;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (this.two || this.mask != 0) return true;
+			while (true) {
+				while (++this.wordIndex < this.wordCount)
+					if ((this.mask = ~this.words[this.wordIndex]) != 0) return true;
+				// current segment exhausted, sieve the next one
+				long next = this.low + 2L * SEGMENT_BITS;
+				if (next >= SegmentedSieve.this.to) return false;
+				this.low = next;
+				int bits = SegmentedSieve.this.segmentBits(next);
+				sieveSegment(next, bits, this.words, SegmentedSieve.this.basePrimes);
+				this.wordCount = (bits + 63) >>> 6;
+				this.wordIndex = -1;
+			}
+		}
+
+		@Override
+		public long nextLong() {
+			if (!this.hasNext()) throw new NoSuchElementException();
+			if (this.two) {
+				this.two = false;
+				return 2;
+			}
+			int bit = Long.numberOfTrailingZeros(this.mask);
+			this.mask &= this.mask - 1;
+			return this.low + (((long) this.wordIndex << 6) + bit) * 2;
+		}
+	}
+
+	/**
+	 * Sieve one segment of odd numbers {@code low, low + 2, ..., low + 2 * (bits - 1)}
+	 * into {@code words}, where a set bit means composite (or out of the segment).<br />
+	 * {@code low} must be odd, {@code bits} must not exceed {@link #SEGMENT_BITS} and
+	 * {@code basePrimes} must contain, in ascending order, all the odd primes up to
+	 * the square root of the segment's last number.<br />
+	 * This method does not depend on any state and can therefore be called
+	 * concurrently on different segments, as long as {@code words} is not shared.
+	 */
+	static void sieveSegment(long low, int bits, long[] words, int[] basePrimes) {
+		int wordCount = (bits + 63) >>> 6;
+		for (int i = 0; i < wordCount; ++i) words[i] = 0;
+		long high = low + 2L * bits;  // exclusive
+		for (int p : basePrimes) {
+			long start = (long) p * p;
+			if (start >= high) break;
+			if (start < low) {  // first odd multiple of p in the segment
+				long r = low % p;
+				start = r == 0 ? low : low + p - r;
+				if ((start & 1) == 0) start += p;
+			}
+			// p > SEGMENT_BITS hits at most once, capping the step avoids overflow
+			int step = Math.min(p, SEGMENT_BITS);
+			for (int j = (int) ((start - low) >>> 1); j < bits; j += step)
+				words[j >>> 6] |= 1L << j;
+		}
+		if (low == 1) words[0] |= 1;  // 1 is not prime
+		if ((bits & 63) != 0) words[wordCount - 1] |= -1L << bits;  // out of segment
+	}
+
+	/**
+	 * Invoke {@code action} on every prime left in a segment sieved by
+	 * {@link #sieveSegment(long, int, long[], int[])}.
+	 */
+	static void forEachInSegment(long low, int bits, long[] words, LongConsumer action) {
+		for (int i = 0, wordCount = (bits + 63) >>> 6; i < wordCount; ++i)
+			for (long mask = ~words[i]; mask != 0; mask &= mask - 1)
+				action.accept(low + (((long) i << 6) + Long.numberOfTrailingZeros(mask)) * 2);
+	}
+
+	/**
+	 * Return the number of primes left in a segment sieved by
+	 * {@link #sieveSegment(long, int, long[], int[])}.
+	 */
+	static int countInSegment(int bits, long[] words) {
+		int count = 0;
+		for (int i = 0, wordCount = (bits + 63) >>> 6; i < wordCount; ++i)
+			count += Long.bitCount(~words[i]);
+		return count;
+	}
+
+	/**
+	 * Return all the odd primes up to {@code maxInclusive} in ascending order.<br />
+	 * Small limits use a plain odd-only sieve, larger ones are sieved recursively by
+	 * a {@link SegmentedSieve}.
+	 */
+	static int[] basePrimes(int maxInclusive) {
+		if (maxInclusive < 3) return new int[0];
+		if (maxInclusive > SMALL_LIMIT) {
+			IntArrayList primes = new IntArrayList((int) estimateCount(maxInclusive + 1L));
+			new SegmentedSieve(3, maxInclusive + 1L).forEach(p -> primes.add((int) p));
+			return primes.toIntArray();
+		}
+
+		// notPrime[i] represents 2 * i + 1
+		boolean[] notPrime = new boolean[(maxInclusive >>> 1) + 1];
+		IntArrayList primes = new IntArrayList();
+		for (int i = 1; i < notPrime.length; ++i)
+			if (!notPrime[i]) {
+				int p = 2 * i + 1;
+				primes.add(p);
+				for (long j = ((long) p * p) >>> 1; j < notPrime.length; j += p)
+					notPrime[(int) j] = true;
+			}
+		return primes.toIntArray();
+	}
+
+	/**
+	 * Return an upper bound of the number of primes below {@code max}, which is useful
+	 * as the initial capacity of a list of primes.<br />
+	 * It uses {@code pi(x) < 1.25506 * x / ln(x)}, which holds for all {@code x > 1}.
+	 */
+	public static long estimateCount(long max) {
+		if (max <= 2) return 0;
+		return (long) (1.25506 * max / Math.log(max)) + 1;
+	}
+}
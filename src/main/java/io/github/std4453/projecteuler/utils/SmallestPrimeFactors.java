@@ -0,0 +1,132 @@
+package io.github.std4453.projecteuler.utils;
+
+import java.util.Arrays;
+
+/**
+ * {@code SmallestPrimeFactors} is a table of the smallest prime factor of every
+ * integer in {@code [2, max]}, built once by a <i>linear sieve</i> in {@code O(max)}
+ * time, where every composite number is crossed out exactly once, by its smallest
+ * prime factor.<br />
+ * With the table, any {@code n <= max} is factorized by repeatedly dividing out its
+ * smallest prime factor, which takes {@code O(log(n))} time and, through
+ * {@link #factorize(int, int[], int[])}, no allocation at all.<br />
+ * The table takes {@code 4 * max} bytes, so that {@code max = 10^8} needs 400MB.
+ */
+public class SmallestPrimeFactors {
+	/**
+	 * Maximum number of distinct prime factors of an {@code int}, since {@code 2 * 3 *
+	 * 5 * ... * 23 * 29 > 2^31}.<br />
+	 * Arrays passed to {@link #factorize(int, int[], int[])} of this length are always
+	 * large enough.
+	 */
+	public static final int MAX_FACTORS = 9;
+
+	private final int max;
+	private final int[] spf;
+	private final int[] primes;
+
+	/**
+	 * Build the table for all the integers up to {@code max}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code max < 1} or {@code max == Integer.MAX_VALUE}.
+	 */
+	public SmallestPrimeFactors(int max) {
+		if (max < 1 || max == Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Illegal max: " + max);
+		this.max = max;
+		this.spf = new int[max + 1];
+
+		int[] spf = this.spf;  // shortcut
+		int[] primes = new int[(int) SegmentedSieve.estimateCount(max + 1L)];
+		int count = 0;
+		for (int i = 2; i <= max; ++i) {
+			if (spf[i] == 0) primes[count++] = spf[i] = i;
+			// i * p has smallest prime factor p for every prime p <= spf[i]
+			int limit = max / i, smallest = spf[i];
+			for (int k = 0; k < count; ++k) {
+				int p = primes[k];
+				if (p > smallest || p > limit) break;
+				spf[i * p] = p;
+			}
+		}
+		this.primes = Arrays.copyOf(primes, count);
+	}
+
+	public int getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Return the smallest prime factor of {@code n}, or {@code 0} for {@code n = 1}.
+	 *
+	 * @throws ArrayIndexOutOfBoundsException
+	 * 		If {@code n} is not in {@code [0, max]}.
+	 */
+	public int get(int n) {
+		return this.spf[n];
+	}
+
+	/**
+	 * Test whether {@code n} is prime in {@code O(1)} time.
+	 *
+	 * @throws ArrayIndexOutOfBoundsException
+	 * 		If {@code n} is not in {@code [0, max]}.
+	 */
+	public boolean isPrime(int n) {
+		return n >= 2 && this.spf[n] == n;
+	}
+
+	/**
+	 * Return the number of primes up to {@code max}.
+	 */
+	public int getPrimeCount() {
+		return this.primes.length;
+	}
+
+	/**
+	 * Return the {@code index}-th prime (starting from {@code getPrime(0) = 2}).
+	 */
+	public int getPrime(int index) {
+		return this.primes[index];
+	}
+
+	/**
+	 * Factorize {@code n} into {@code bases} and {@code exponents}, in ascending order
+	 * of the prime factors, and return the number of distinct prime factors.<br />
+	 * Nothing is allocated, so that this method can be called in hot loops with the
+	 * same arrays, which should have length at least {@link #MAX_FACTORS} (or the
+	 * number of distinct prime factors of {@code n}, if known).
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n} is not in {@code [1, max]}.
+	 */
+	public int factorize(int n, int[] bases, int[] exponents) {
+		if (n < 1 || n > this.max) throw new IllegalArgumentException("Illegal n: " + n);
+		int[] spf = this.spf;  // shortcut
+		int size = 0;
+		while (n > 1) {
+			int p = spf[n], expo = 0;
+			do {
+				n /= p;
+				++expo;
+			} while (spf[n] == p);
+			bases[size] = p;
+			exponents[size] = expo;
+			++size;
+		}
+		return size;
+	}
+
+	/**
+	 * Factorize {@code n} and return the result as {@link IntFactorized}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code n} is not in {@code [1, max]}.
+	 */
+	public IntFactorized factorize(int n) {
+		int[] bases = new int[MAX_FACTORS], exponents = new int[MAX_FACTORS];
+		int size = this.factorize(n, bases, exponents);
+		return new IntFactorized(bases, exponents, size);
+	}
+}
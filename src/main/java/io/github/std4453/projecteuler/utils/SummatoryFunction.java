@@ -0,0 +1,140 @@
+package io.github.std4453.projecteuler.utils;
+
+/**
+ * {@code SummatoryFunction} calculates {@code F(x) = f(1) + f(2) + ... + f(x)} modulo
+ * a given modulus for any {@code x} up to a given limit {@code n} in {@code
+ * O(n^(2/3))} time, where {@code f} is an arithmetic function whose <i>Dirichlet
+ * convolution</i> with the constant function {@code 1} has an easily calculated
+ * summatory function {@code H}.<br />
+ * Summing {@code (f * 1)(k) = sum(f(d), d | k)} over {@code k <= x} gives:<br />
+ * {@code sum(F(floor(x / d)), d = 1..x) = H(x)}, that is, {@code F(x) = H(x) -
+ * sum(F(floor(x / d)), d = 2..x)}<br />
+ * where {@code floor(x / d)} takes only {@code O(sqrt(x))} distinct values, each over
+ * a block of consecutive {@code d} (see {@link QuotientBlocks}). {@code F(v)} for
+ * {@code v <= n^(2/3)} comes from a sieve done by the subclass, and larger values are
+ * calculated recursively and memoized in a primitive hash map. Since {@code
+ * floor(floor(x / a) / b) = floor(x / (a * b))}, the recursion for {@code F(n)} only
+ * ever needs {@code F(floor(n / k))}, and later queries reuse the memoized values.
+ * <br />
+ * For example, {@code mu * 1} is {@code 1} at {@code 1} and {@code 0} elsewhere, so
+ * that {@code H(x) = 1} for the <i>Mertens function</i> (see {@link Mertens}), and
+ * {@code phi * 1} is the identity, so that {@code H(x) = x * (x + 1) / 2} for the
+ * summatory totient function (see {@link TotientSum}).
+ */
+public abstract class SummatoryFunction {
+	// cap the sieve to keep the memory of the subclasses within 1GB
+	private static final int MAX_SIEVE = 1 << 26;
+
+	private final long limit;
+	private final ModArith arith;
+	private final int sieveLimit;
+	private final LongLongHashMap cache = new LongLongHashMap();
+	private long cacheHits;
+	private long cacheMisses;
+
+	/**
+	 * Construct an engine for {@code F(x)} with {@code x <= limit}. The subclass should
+	 * then sieve {@code F(v)} for {@code v <= getSieveLimit()}.
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code limit < 1} or {@code modulus < 0}.
+	 */
+	protected SummatoryFunction(long limit, long modulus) {
+		if (limit < 1) throw new IllegalArgumentException("Illegal limit: " + limit);
+		this.limit = limit;
+		this.arith = new ModArith(modulus);
+		this.sieveLimit = (int) Math.max(1, Math.min(MAX_SIEVE,
+				Math.pow(limit, 2.0 / 3)));
+	}
+
+	/**
+	 * Return {@code F(v) mod modulus} for {@code v} in {@code [0, getSieveLimit()]}.
+	 */
+	protected abstract long sieved(int v);
+
+	/**
+	 * Return {@code H(x) mod modulus}, the summatory function of {@code f * 1}, for
+	 * {@code x > getSieveLimit()}.
+	 */
+	protected abstract long convolved(long x);
+
+	/**
+	 * Return {@code F(x) mod modulus}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code x} is not in {@code [0, limit]}.
+	 */
+	public long get(long x) {
+		if (x < 0 || x > this.limit) throw new IllegalArgumentException("Illegal x: " + x);
+		return this.calculate(x);
+	}
+
+	private long calculate(long x) {
+		if (x <= this.sieveLimit) return this.sieved((int) x);
+		long cached = this.cache.get(x, Long.MIN_VALUE);
+		if (cached != Long.MIN_VALUE || this.cache.containsKey(x)) {
+			++this.cacheHits;
+			return cached;
+		}
+		++this.cacheMisses;
+
+		// all d in [d, last] share the same floor(x / d)
+		ModArith arith = this.arith;  // shortcut
+		long result = this.convolved(x);
+		for (long d = 2, last; d <= x; d = last + 1) {
+			long q = x / d;
+			last = x / q;
+			long count = arith.reduce(last - d + 1);
+			result = arith.subtract(result, arith.multiply(count, this.calculate(q)));
+		}
+		this.cache.put(x, result);
+		return result;
+	}
+
+	public long getLimit() {
+		return this.limit;
+	}
+
+	public long getModulus() {
+		return this.arith.getModulus();
+	}
+
+	/**
+	 * Return the {@link ModArith} of the modulus, for the subclasses to calculate
+	 * {@code F} and {@code H} with.
+	 */
+	protected ModArith getArith() {
+		return this.arith;
+	}
+
+	public int getSieveLimit() {
+		return this.sieveLimit;
+	}
+
+	/**
+	 * Return the number of memoized lookups of {@code F(v)} with {@code v} above the
+	 * sieve limit that were answered from the cache.
+	 */
+	public long getCacheHits() {
+		return this.cacheHits;
+	}
+
+	/**
+	 * Return the number of memoized lookups of {@code F(v)} with {@code v} above the
+	 * sieve limit that had to be calculated.
+	 */
+	public long getCacheMisses() {
+		return this.cacheMisses;
+	}
+
+	/**
+	 * Return {@code hits / (hits + misses)}, or {@code 0} if nothing was looked up.
+	 */
+	public double getCacheHitRatio() {
+		long total = this.cacheHits + this.cacheMisses;
+		return total == 0 ? 0 : (double) this.cacheHits / total;
+	}
+}
@@ -0,0 +1,48 @@
+package io.github.std4453.projecteuler.utils;
+
+/**
+ * {@code TotientSum} calculates the <i>summatory totient function</i> {@code Phi(x) =
+ * phi(1) + phi(2) + ... + phi(x)} modulo a given modulus for any {@code x} up to a
+ * given limit {@code n} in {@code O(n^(2/3))} time.<br />
+ * Since {@code sum(phi(d), d | k) = k}, summing it over {@code k <= x} gives:<br />
+ * {@code sum(Phi(floor(x / d)), d = 1..x) = x * (x + 1) / 2}<br />
+ * which is evaluated by {@link SummatoryFunction} on top of a linear sieve of {@code
+ * phi}.<br />
+ * {@code Phi(x)} counts the reduced fractions {@code a / b} with {@code 0 < a <= b <=
+ * x}, so that {@code 2 * Phi(x) - 1} is the number of ordered coprime pairs in {@code
+ * [1, x]^2} and {@code Phi(x) + 1} is the length of the <i>Farey sequence</i> of order
+ * {@code x}.
+ */
+public class TotientSum extends SummatoryFunction {
+	private final long[] small;  // Phi(v) mod modulus for v <= sieveLimit
+
+	/**
+	 * Construct an engine for {@code Phi(x) mod modulus} with {@code x <= limit},
+	 * sieving {@code phi} up to {@code limit^(2/3)} immediately.
+	 *
+	 * @param modulus
+	 * 		The modulus, or 0 for modulo {@code 2^64}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If {@code limit < 1} or {@code modulus < 0}.
+	 */
+	public TotientSum(long limit, long modulus) {
+		super(limit, modulus);
+		int sieveLimit = this.getSieveLimit();
+		ModArith arith = this.getArith();
+		int[] phi = NumberTheory.totients(sieveLimit);
+		this.small = new long[sieveLimit + 1];
+		for (int v = 1; v <= sieveLimit; ++v)
+			this.small[v] = arith.add(this.small[v - 1], arith.reduce(phi[v]));
+	}
+
+	@Override
+	protected long sieved(int v) {
+		return this.small[v];
+	}
+
+	@Override
+	protected long convolved(long x) {
+		return this.getArith().triangle(x);
+	}
+}
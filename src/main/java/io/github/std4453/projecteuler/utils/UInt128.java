@@ -0,0 +1,206 @@
+package io.github.std4453.projecteuler.utils;
+
+import java.math.BigInteger;
+import java.util.stream.LongStream;
+
+import static io.github.std4453.projecteuler.utils.MathsHelper.unsignedMultiplyHigh;
+
+/**
+ * {@code UInt128} is a mutable unsigned 128-bit integer, stored as two {@code longs}
+ * {@code high * 2^64 + low}, for exact sums and products that overflow {@code long}
+ * but not {@code 2^128}, without allocating a {@link BigInteger} on every
+ * operation.<br />
+ * All the operations modify this instance in place and return it, so that they can
+ * be chained, and wrap around modulo {@code 2^128} like {@code long} does modulo
+ * {@code 2^64}. A {@code long} argument is treated as unsigned, unless stated
+ * otherwise.<br />
+ * Sums of primitive streams are collected with:<br />
+ * {@code stream.collect(UInt128::new, UInt128::add, UInt128::add)}<br />
+ * which is exactly {@link #sum(LongStream)}.
+ */
+public class UInt128 implements Comparable<UInt128> {
+	private static final long TEN_18 = 1_000_000_000_000_000_000L;
+
+	private long high;
+	private long low;
+
+	/**
+	 * Construct a {@code UInt128} of value 0.
+	 */
+	public UInt128() {
+	}
+
+	/**
+	 * Construct a {@code UInt128} of value {@code low}, treated as unsigned.
+	 */
+	public UInt128(long low) {
+		this.low = low;
+	}
+
+	public UInt128(long high, long low) {
+		this.high = high;
+		this.low = low;
+	}
+
+	public UInt128(UInt128 n) {
+		this(n.high, n.low);
+	}
+
+	/**
+	 * Return the sum of the {@code values}, treated as unsigned.
+	 */
+	public static UInt128 sum(LongStream values) {
+		return values.collect(UInt128::new, UInt128::add, UInt128::add);
+	}
+
+	public long getHigh() {
+		return this.high;
+	}
+
+	public long getLow() {
+		return this.low;
+	}
+
+	public boolean isZero() {
+		return (this.high | this.low) == 0;
+	}
+
+	public UInt128 set(long high, long low) {
+		this.high = high;
+		this.low = low;
+		return this;
+	}
+
+	/**
+	 * Add {@code n}, treated as unsigned.
+	 */
+	public UInt128 add(long n) {
+		long sum = this.low + n;
+		if (Long.compareUnsigned(sum, n) < 0) ++this.high;  // carry
+		this.low = sum;
+		return this;
+	}
+
+	/**
+	 * Add {@code n}, treated as signed, which is the same as subtracting {@code -n}.
+	 */
+	public UInt128 addSigned(long n) {
+		this.add(n);
+		this.high += n >> 63;  // sign extension
+		return this;
+	}
+
+	/**
+	 * Add {@code n}, which may be this instance itself.
+	 */
+	public UInt128 add(UInt128 n) {
+		long high = n.high;  // read before the carry, in case n is this
+		this.add(n.low);
+		this.high += high;
+		return this;
+	}
+
+	/**
+	 * Subtract {@code n}, which may be this instance itself.
+	 */
+	public UInt128 subtract(UInt128 n) {
+		long high = n.high, low = n.low;  // read before the borrow, in case n is this
+		if (Long.compareUnsigned(this.low, low) < 0) --this.high;  // borrow
+		this.low -= low;
+		this.high -= high;
+		return this;
+	}
+
+	/**
+	 * Add the full 128-bit product of {@code a} and {@code b}, both treated as
+	 * unsigned, which is the kernel of exact sums of products.
+	 */
+	public UInt128 addProduct(long a, long b) {
+		this.high += unsignedMultiplyHigh(a, b);
+		return this.add(a * b);
+	}
+
+	/**
+	 * Multiply by {@code n}, treated as unsigned.
+	 */
+	public UInt128 multiply(long n) {
+		long high = unsignedMultiplyHigh(this.low, n) + this.high * n;
+		this.low *= n;
+		this.high = high;
+		return this;
+	}
+
+	/**
+	 * Divide by {@code divisor}, treated as unsigned, and return the remainder. This
+	 * instance becomes the quotient.
+	 *
+	 * @throws ArithmeticException
+	 * 		If {@code divisor} is 0.
+	 */
+	public long divideAndRemainder(long divisor) {
+		long highQuotient = Long.divideUnsigned(this.high, divisor);
+		long highRemainder = this.high - highQuotient * divisor;
+		// highRemainder < divisor, so that the quotient fits in 64 bits
+		long lowQuotient = MathsHelper.divideUnsigned(highRemainder, this.low, divisor);
+		long remainder = this.low - lowQuotient * divisor;
+		this.high = highQuotient;
+		this.low = lowQuotient;
+		return remainder;
+	}
+
+	/**
+	 * Return the remainder of dividing by {@code divisor}, treated as unsigned,
+	 * without modifying this instance.
+	 *
+	 * @throws ArithmeticException
+	 * 		If {@code divisor} is 0.
+	 */
+	public long remainder(long divisor) {
+		long highRemainder = Long.remainderUnsigned(this.high, divisor);
+		return MathsHelper.remainderUnsigned(highRemainder, this.low, divisor);
+	}
+
+	@Override
+	public int compareTo(UInt128 o) {
+		int result = Long.compareUnsigned(this.high, o.high);
+		return result != 0 ? result : Long.compareUnsigned(this.low, o.low);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		UInt128 n = (UInt128) o;
+		return this.high == n.high && this.low == n.low;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Long.hashCode(this.high) + Long.hashCode(this.low);
+	}
+
+	public BigInteger toBigInteger() {
+		return new BigInteger(Long.toUnsignedString(this.high)).shiftLeft(64)
+				.add(new BigInteger(Long.toUnsignedString(this.low)));
+	}
+
+	/**
+	 * Return the decimal representation, taking 18 digits at a time by dividing by
+	 * {@code 10^18}.
+	 */
+	@Override
+	public String toString() {
+		if (this.high == 0) return Long.toUnsignedString(this.low);
+		UInt128 n = new UInt128(this);
+		long lowDigits = n.divideAndRemainder(TEN_18);
+		if (n.high == 0) return Long.toUnsignedString(n.low) + pad(lowDigits);
+		long middleDigits = n.divideAndRemainder(TEN_18);  // 2^128 < 10^39
+		return n.low + pad(middleDigits) + pad(lowDigits);
+	}
+
+	// 18 digits with leading zeros
+	private static String pad(long digits) {
+		String s = Long.toString(digits);
+		return "000000000000000000".substring(s.length()) + s;
+	}
+}
@@ -0,0 +1,35 @@
+package io.github.std4453.projecteuler;
+
+import io.github.std4453.projecteuler.utils.UInt128;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Check {@link UInt128} against {@link BigInteger}, including operations with itself
+ * as the argument.
+ */
+public class Test7 {
+	private static final BigInteger MODULUS = BigInteger.ONE.shiftLeft(128);
+
+	public static void main(String[] args) {
+		Random random = new Random(128);
+		for (int i = 0; i < 20000; ++i) {
+			UInt128 a = new UInt128(random.nextLong(), random.nextLong());
+			UInt128 b = new UInt128(random.nextLong(), random.nextLong());
+			BigInteger x = a.toBigInteger(), y = b.toBigInteger();
+			check(new UInt128(a).add(b), x.add(y));
+			check(new UInt128(a).subtract(b), x.subtract(y));
+			UInt128 c = new UInt128(a);
+			check(c.add(c), x.add(x));
+			UInt128 d = new UInt128(a);
+			check(d.subtract(d), BigInteger.ZERO);
+		}
+		System.out.println("OK");
+	}
+
+	private static void check(UInt128 actual, BigInteger expected) {
+		if (!actual.toBigInteger().equals(expected.mod(MODULUS)))
+			throw new AssertionError(actual + " != " + expected.mod(MODULUS));
+	}
+}